@@ -0,0 +1,84 @@
+package bench;
+import code.Bottle;
+import code.Node;
+import code.PackedState;
+import code.StateSet;
+import code.WaterSortSearch;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Hot primitives of one expansion, measured on the initial state of a puzzle
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitivesBenchmark {
+    @Param({"grid1", "grid3", "large7x5"})
+    public String puzzle;
+
+    private Node root;
+    private Bottle bottle;
+    private StateSet seen;
+    private PackedState child;
+
+    @Setup
+    public void setUp() {
+        String grid = Puzzles.grid(puzzle);
+        root = WaterSortSearch.initializeNode(grid);
+        String[] parts = grid.split(";");
+        bottle = new Bottle(parts[2].replace(",", ""), Integer.parseInt(parts[1]));
+        ArrayList<Node> children = root.getChildren();
+        child = children.get(0).getStateKey();
+        seen = new StateSet(root.getStateKey().size());
+        seen.add(root.getStateKey());
+        seen.add(child);
+    }
+
+    @Benchmark
+    public ArrayList<Node> getChildren() {
+        return root.getChildren();
+    }
+
+    @Benchmark
+    public Bottle bottleClone() {
+        return bottle.clone();
+    }
+
+    @Benchmark
+    public PackedState getStateKey() {
+        return root.getStateKey();
+    }
+
+    @Benchmark
+    public boolean stateSetContains() {
+        return seen.contains(child);
+    }
+
+    @Benchmark
+    public boolean isGoal() {
+        return root.isGoal();
+    }
+
+    @Benchmark
+    public int calculateH1() {
+        return root.calculateH1();
+    }
+
+    @Benchmark
+    public int calculateH2() {
+        return root.calculateH2();
+    }
+}
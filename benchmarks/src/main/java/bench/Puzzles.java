@@ -0,0 +1,33 @@
+package bench;
+import code.PuzzleGenerator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Benchmark inputs: the grids from tests/PublicTests, two larger hand-made
+// boards and seeded boards from PuzzleGenerator
+final class Puzzles {
+    static final Map<String, String> GRIDS = new LinkedHashMap<>();
+
+    static {
+        GRIDS.put("grid0", "3;4;r,y,r,y;y,r,y,r;e,e,e,e;");
+        GRIDS.put("grid1", "5;4;b,y,r,b;b,y,r,r;y,r,b,y;e,e,e,e;e,e,e,e;");
+        GRIDS.put("grid2", "5;4;b,r,o,b;b,r,o,o;r,o,b,r;e,e,e,e;e,e,e,e;");
+        GRIDS.put("grid3", "6;4;g,g,g,r;g,y,r,o;o,r,o,y;y,o,y,b;r,b,b,b;e,e,e,e;");
+        GRIDS.put("grid4", "6;3;r,r,y;b,y,r;y,b,g;g,g,b;e,e,e;e,e,e;");
+        GRIDS.put("large7x4", "7;4;r,g,b,y;o,r,g,b;y,o,r,g;b,y,o,r;g,b,y,o;e,e,e,e;e,e,e,e;");
+        GRIDS.put("large7x5", "7;5;r,g,b,y,o;g,b,y,o,r;b,y,o,r,g;y,o,r,g,b;o,r,g,b,y;e,e,e,e,e;e,e,e,e,e;");
+        GRIDS.put("gen8x4", new PuzzleGenerator(1, 8, 4, 6, 2, 100).next());
+        GRIDS.put("gen10x4", new PuzzleGenerator(1, 10, 4, 8, 2, 200).next());
+    }
+
+    static String grid(String name) {
+        String grid = GRIDS.get(name);
+        if (grid == null) {
+            throw new IllegalArgumentException("Unknown puzzle: " + name);
+        }
+        return grid;
+    }
+
+    private Puzzles() {
+    }
+}
@@ -0,0 +1,50 @@
+package bench;
+import code.SearchOptions;
+import code.SearchResult;
+import code.WaterSortSearch;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// End-to-end WaterSortSearch.solve for every strategy and puzzle
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolveBenchmark {
+    @Param({"BF", "DF", "UC", "GR1", "GR2", "GR3", "AS1", "AS2", "AS3", "ID", "IDA1", "IDA2", "ARA1", "ARA2", "BS1", "BS2", "BS3"})
+    public String strategy;
+
+    @Param({"grid0", "grid1", "grid2", "grid3", "grid4", "large7x4", "large7x5", "gen8x4", "gen10x4"})
+    public String puzzle;
+
+    // Transposition table entries for ID, IDA1 and IDA2; without one they do not
+    // finish on the larger boards. Other strategies ignore it
+    @Param({"65536"})
+    public int transpositionTable;
+
+    private String grid;
+    private SearchOptions options;
+
+    @Setup
+    public void setUp() {
+        grid = Puzzles.grid(puzzle);
+        options = new SearchOptions().setTranspositionTable(transpositionTable);
+    }
+
+    @Benchmark
+    public SearchResult solve() {
+        return WaterSortSearch.solveResult(grid, strategy, false, options);
+    }
+}
@@ -0,0 +1,90 @@
+package code;
+import java.util.Arrays;
+
+// Bitstate hashing: a Bloom filter of visited states in a fixed bit array. A
+// state sets k bits chosen by double hashing of a 64-bit hash of its bottles
+// and counts as seen when all k are already set, so memory never grows but a
+// new state may be taken for a duplicate and omitted from the search. Nothing
+// is ever reported as new twice. The bit array is rounded down to a power of
+// two so it never exceeds the requested size, and states carry no values.
+public class BitStateSet implements StateTable {
+    private final long[] words;
+    private final long mask; // Bits - 1
+    private final int hashes; // Bits set per state
+    private int size; // States added, i.e. reported as new
+
+    public BitStateSet(long bytes, int hashes) {
+        if (bytes < 8 || bytes > (1L << 33)) {
+            throw new IllegalArgumentException("Bitstate table needs 8 bytes to 8 GiB: " + bytes);
+        }
+        if (hashes < 1 || hashes > 16) {
+            throw new IllegalArgumentException("Bitstate hash count must be 1 to 16: " + hashes);
+        }
+        long bits = Long.highestOneBit(bytes) * 8;
+        this.words = new long[(int) (bits / 64)];
+        this.mask = bits - 1;
+        this.hashes = hashes;
+    }
+
+    // 64-bit hash of a packed state, mixed like StateSet.hash
+    private static long hash64(long[] bottles) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (long bottle : bottles) {
+            h = (h ^ bottle) * 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 31;
+        }
+        h *= 0x94D049BB133111EBL;
+        return h ^ (h >>> 29);
+    }
+
+    @Override
+    public boolean contains(long[] bottles) {
+        long h = hash64(bottles);
+        long step = (h >>> 32) | 1; // Odd, so probes differ within a power-of-two table
+        for (int k = 0; k < hashes; k++) {
+            long bit = (h + k * step) & mask;
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean add(long[] bottles) {
+        long h = hash64(bottles);
+        long step = (h >>> 32) | 1;
+        boolean added = false;
+        for (int k = 0; k < hashes; k++) {
+            long bit = (h + k * step) & mask;
+            int word = (int) (bit >>> 6);
+            if ((words[word] & (1L << bit)) == 0) {
+                words[word] |= 1L << bit;
+                added = true;
+            }
+        }
+        if (added) {
+            size++;
+        }
+        return added;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(words, 0);
+        size = 0;
+    }
+
+    // Chance that a state not added yet is taken for a duplicate, given the
+    // states added so far: (1 - e^(-k n / m))^k. It only grows during a search,
+    // so the final value bounds the chance for every state omitted before
+    public double omissionProbability() {
+        double bits = mask + 1.0;
+        return Math.pow(1 - Math.exp(-hashes * (double) size / bits), hashes);
+    }
+}
@@ -2,11 +2,12 @@ package code;
 import java.util.Stack;
 
 public class Bottle {
-    static int MaxCapacity; // Maximum capacity for all bottles
+    final int capacity; // Maximum number of layers in this bottle
     Stack<String> layers; // Stack to hold the layers of colors in the bottle
 
     // Constructor
-    public Bottle(String colors) {
+    public Bottle(String colors, int capacity) {
+        this.capacity = capacity;
         layers = new Stack<>();
 
         // Reverse the string so that the first color (top) is added last to the stack
@@ -19,11 +20,6 @@ public class Bottle {
         fillWithEmptySpaces();
     }
 
-    // Static method to set the MaxCapacity for all bottles
-    public static void setMaxCapacity(int capacity) {
-        MaxCapacity = capacity;
-    }
-
     // Add a layer to the bottle
     public boolean addLayer(String color) {
         // If we're adding 'e', just return true without affecting capacity
@@ -44,7 +40,7 @@ public class Bottle {
         }
 
         // Check if the bottle is full
-        if (getNonEmptyCapacity() == MaxCapacity) {
+        if (getNonEmptyCapacity() == capacity) {
             System.out.println("Bottle is full!");
             return false; // Layer not added because the bottle is full
         }
@@ -73,7 +69,7 @@ public class Bottle {
 
     // Fill the remaining space in the bottle with empty layers ('e')
     private void fillWithEmptySpaces() {
-        while (layers.size() < MaxCapacity) {
+        while (layers.size() < capacity) {
             layers.push("e");
         }
     }
@@ -82,7 +78,7 @@ public class Bottle {
     @Override
     public Bottle clone() {
         // Create a new empty bottle with no layers
-        Bottle clonedBottle = new Bottle("");
+        Bottle clonedBottle = new Bottle("", capacity);
 
         // Clone each layer using addLayer, including empty spaces
         for (String layer : layers) {
@@ -92,16 +88,15 @@ public class Bottle {
         return clonedBottle; // Return the new cloned bottle
     }
 
-    // Validate if the color is one of the allowed colors (r, g, b, y, o)
+    // Validate if the color is one of the allowed colors (see PackedState.COLORS)
     private boolean isValidColor(String color) {
-        return color.equals("r") || color.equals("g") || color.equals("b") ||
-                color.equals("y") || color.equals("o");
+        return color.length() == 1 && PackedState.COLORS.indexOf(color.charAt(0)) >= 0;
     }
 
     // Check if the bottle is full (taking into account both colors and empty
     // spaces)
     public boolean isFull() {
-        return getNonEmptyCapacity() >= MaxCapacity;
+        return getNonEmptyCapacity() >= capacity;
     }
 
     // Check if the bottle is empty (contains only empty spaces)
@@ -130,11 +125,7 @@ public class Bottle {
         // Count non-empty layers (ignoring 'e')
         return (int) layers.stream().filter(layer -> !layer.equals("e")).count();
     }
-    
-    // Static method to reset MaxCapacity to a default value
-    public static void resetMaxCapacity() {
-      MaxCapacity = 0; // Set to a default value, or you can choose any value that makes sense
-  }
+
  // **NEW** Count the number of layers that are not matching the top color
     public int countOutOfPlaceLayers() {
         if (layers.isEmpty()) return 0;
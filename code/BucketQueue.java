@@ -0,0 +1,218 @@
+package code;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+
+// Priority queue for small integer keys. Nodes are kept in buckets indexed by
+// the strategy's key (g for UC, h for greedy, g + h for A*) and, inside a
+// bucket, in sub-buckets indexed by the tie-breaking key, so add and poll are
+// O(1) apart from skipping empty buckets. It is a drop-in replacement for a
+// PriorityQueue ordered by NodeComparator.
+public class BucketQueue extends AbstractQueue<Node> {
+    // Tie-breaking among nodes with the same key
+    public enum TieBreak {
+        FIFO, // Oldest node first
+        LIFO, // Newest node first
+        HIGH_G, // Deepest path cost first, newest among equals
+        LOW_H // Lowest heuristic first, newest among equals
+    }
+
+    static final int KEY_G = 0;
+    static final int KEY_H = 1;
+    static final int KEY_F = 2;
+
+    private final int keyType;
+    private final TieBreak tieBreak;
+    private Bucket[] buckets = new Bucket[16];
+    private int minKey; // No bucket below this key holds a node
+    private int size;
+
+    public BucketQueue(String strategy, TieBreak tieBreak) {
+        this.keyType = keyType(strategy);
+        this.tieBreak = tieBreak;
+    }
+
+    // Which key the strategy orders by
+    static int keyType(String strategy) {
+        switch (strategy) {
+            case "UC":
+                return KEY_G;
+            case "GR1":
+            case "GR2":
+            case "GR3":
+                return KEY_H;
+            case "AS1":
+            case "AS2":
+            case "AS3":
+                return KEY_F;
+            default:
+                throw new IllegalArgumentException("Invalid search strategy: " + strategy);
+        }
+    }
+
+    // A* prefers deeper nodes on f plateaus and UC the newest node; greedy keeps
+    // insertion order, since preferring deep nodes there produces long plans
+    public static TieBreak defaultTieBreak(String strategy) {
+        switch (strategy) {
+            case "AS1":
+            case "AS2":
+            case "AS3":
+                return TieBreak.HIGH_G;
+            case "UC":
+                return TieBreak.LIFO;
+            default:
+                return TieBreak.FIFO;
+        }
+    }
+
+    static int key(int keyType, int pathCost, int heuristic) {
+        switch (keyType) {
+            case KEY_G:
+                return pathCost;
+            case KEY_H:
+                return heuristic;
+            default:
+                return pathCost + heuristic;
+        }
+    }
+
+    static int tieKey(TieBreak tieBreak, int pathCost, int heuristic) {
+        switch (tieBreak) {
+            case HIGH_G:
+                return pathCost;
+            case LOW_H:
+                return heuristic;
+            default:
+                return 0;
+        }
+    }
+
+    @Override
+    public boolean offer(Node node) {
+        int key = key(keyType, node.pathCost, node.heuristicValue);
+        if (key < 0) {
+            throw new IllegalArgumentException("Negative priority: " + key);
+        }
+        if (key >= buckets.length) {
+            Bucket[] grown = new Bucket[Math.max(key + 1, buckets.length * 2)];
+            System.arraycopy(buckets, 0, grown, 0, buckets.length);
+            buckets = grown;
+        }
+        if (buckets[key] == null) {
+            buckets[key] = new Bucket(tieBreak == TieBreak.HIGH_G);
+        }
+        buckets[key].add(tieKey(tieBreak, node.pathCost, node.heuristicValue), node);
+        if (size == 0 || key < minKey) {
+            minKey = key;
+        }
+        size++;
+        return true;
+    }
+
+    @Override
+    public Node poll() {
+        if (size == 0) {
+            return null;
+        }
+        while (buckets[minKey] == null || buckets[minKey].size == 0) {
+            minKey++;
+        }
+        size--;
+        return buckets[minKey].poll(tieBreak == TieBreak.FIFO);
+    }
+
+    @Override
+    public Node peek() {
+        if (size == 0) {
+            return null;
+        }
+        while (buckets[minKey] == null || buckets[minKey].size == 0) {
+            minKey++;
+        }
+        return buckets[minKey].peek(tieBreak == TieBreak.FIFO);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        buckets = new Bucket[16];
+        minKey = 0;
+        size = 0;
+    }
+
+    // Snapshot in no particular order, only for inspection. It is read-only, so
+    // remove(Object), removeAll, retainAll and Iterator.remove throw
+    // UnsupportedOperationException instead of silently keeping the nodes
+    @Override
+    public Iterator<Node> iterator() {
+        ArrayList<Node> nodes = new ArrayList<>(size);
+        for (Bucket bucket : buckets) {
+            if (bucket != null) {
+                for (ArrayDeque<Node> slot : bucket.slots) {
+                    if (slot != null) {
+                        nodes.addAll(slot);
+                    }
+                }
+            }
+        }
+        return Collections.unmodifiableList(nodes).iterator();
+    }
+
+    // Nodes sharing one key, split by tie-breaking key
+    private static final class Bucket {
+        private final boolean preferHigh; // Serve the highest tie key first instead of the lowest
+        private ArrayDeque<Node>[] slots = newSlots(4);
+        private int best; // Tie key to serve next (all better slots are empty)
+        private int size;
+
+        Bucket(boolean preferHigh) {
+            this.preferHigh = preferHigh;
+        }
+
+        private static ArrayDeque<Node>[] newSlots(int length) {
+            @SuppressWarnings("unchecked")
+            ArrayDeque<Node>[] slots = (ArrayDeque<Node>[]) new ArrayDeque<?>[length];
+            return slots;
+        }
+
+        void add(int tieKey, Node node) {
+            if (tieKey >= slots.length) {
+                ArrayDeque<Node>[] grown = newSlots(Math.max(tieKey + 1, slots.length * 2));
+                System.arraycopy(slots, 0, grown, 0, slots.length);
+                slots = grown;
+            }
+            if (slots[tieKey] == null) {
+                slots[tieKey] = new ArrayDeque<>();
+            }
+            slots[tieKey].addLast(node);
+            if (size == 0 || (preferHigh ? tieKey > best : tieKey < best)) {
+                best = tieKey;
+            }
+            size++;
+        }
+
+        private ArrayDeque<Node> bestSlot() {
+            while (slots[best] == null || slots[best].isEmpty()) {
+                best += preferHigh ? -1 : 1;
+            }
+            return slots[best];
+        }
+
+        Node poll(boolean fifo) {
+            ArrayDeque<Node> slot = bestSlot();
+            size--;
+            return fifo ? slot.pollFirst() : slot.pollLast();
+        }
+
+        Node peek(boolean fifo) {
+            ArrayDeque<Node> slot = bestSlot();
+            return fifo ? slot.peekFirst() : slot.peekLast();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package code;
+
+// Flag another thread can raise to stop the searches that were given this token.
+// Searches poll it once per expansion and return a budget-exhausted result
+public class CancellationToken {
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
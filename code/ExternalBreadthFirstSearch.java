@@ -0,0 +1,467 @@
+package code;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.IntBinaryOperator;
+import java.util.stream.Stream;
+
+// Breadth-first search with its layers on disk instead of the heap. Every layer
+// is a file of fixed-width records (packed state, index of the parent record in
+// the previous layer, move), scanned through memory-mapped windows. Children of
+// a layer are hash-partitioned into candidate files; each partition is then
+// loaded on its own, sorted, stripped of duplicates and merged against the
+// partition's sorted file of every state seen so far. The survivors of all
+// partitions are merged back into generation order to form the next layer, so
+// the plan, path cost and expansion count match the in-memory search. Only one
+// partition is ever held in memory, so raising the partition count lets larger
+// boards fit. The plan is rebuilt from the parent indices in the layer files.
+public class ExternalBreadthFirstSearch {
+    private static final long MAP_WINDOW = 1L << 26; // Bytes mapped at a time when scanning a file
+    private static final int WRITE_BUFFER = 1 << 16;
+
+    private final Node root;
+    private final SearchOptions options;
+    private final Path directory;
+    private final int partitions;
+    private final int width;
+    private final int linkedBytes; // Layer and candidate records: state, parent index, move
+    private final int stateBytes; // Seen-state records: state only
+    private int expandedNodes;
+    private long generatedNodes; // Candidate records of the merged layers
+    private long seenStates; // States in the seen files, all layers but the root's
+    private long peakLayer = 1;
+    private final SearchBudget budget;
+    private SearchBudget.Limit exhaustedBy; // The limit that stopped the search, null if none did
+
+    public ExternalBreadthFirstSearch(Node root, SearchOptions options) {
+        this.root = root;
+        this.options = options;
+        this.directory = options.externalDirectory;
+        this.partitions = options.externalPartitions;
+        this.width = root.state.size();
+        this.stateBytes = width * Long.BYTES;
+        this.linkedBytes = stateBytes + Long.BYTES + Integer.BYTES;
+        this.budget = new SearchBudget(options);
+    }
+
+    // Run the search; the layer files are deleted afterwards. Peak closed is the
+    // number of states in the seen files, peak frontier the largest layer, and
+    // like the parallel search only children of fully expanded layers count
+    public SearchResult search() {
+        Path work = null;
+        try {
+            Files.createDirectories(directory);
+            work = Files.createTempDirectory(directory, "bfs");
+            return searchLayers(work);
+        } catch (IOException e) {
+            throw new UncheckedIOException("External BFS failed", e);
+        } finally {
+            if (work != null) {
+                deleteAll(work);
+            }
+        }
+    }
+
+    private SearchResult searchLayers(Path work) throws IOException {
+        try (RecordWriter layer = new RecordWriter(layerFile(work, 0), true)) {
+            layer.write(root.state.bottles, -1, -1); // Like the serial search, the root itself is not marked as seen
+        }
+
+        int depth = 0;
+        long layerSize = 1;
+        while (layerSize > 0) {
+            long goal = expandLayer(work, depth);
+            if (goal >= 0) {
+                return rebuildPlan(work, depth, goal);
+            }
+            if (exhaustedBy != null) {
+                // States are only on disk, so no partial plan is kept
+                SearchResult result = SearchResult.noSolution(expandedNodes, generatedNodes, generatedNodes - seenStates,
+                        peakLayer, seenStates);
+                result.setExhausted(exhaustedBy, null);
+                return result;
+            }
+            layerSize = mergeCandidates(work, depth + 1);
+            seenStates += layerSize;
+            peakLayer = Math.max(peakLayer, layerSize);
+            depth++;
+        }
+        return SearchResult.noSolution(expandedNodes, generatedNodes, generatedNodes - seenStates, peakLayer, seenStates);
+    }
+
+    // Test the layer's states for the goal in file order and write the children
+    // of all of them to the candidate partitions; returns the goal's index, or -1
+    // if there is none or the budget ran out
+    private long expandLayer(Path work, int depth) throws IOException {
+        RecordWriter[] candidates = new RecordWriter[partitions];
+        long[] scratch = new long[width];
+        long written = 0;
+        try {
+            for (int p = 0; p < partitions; p++) {
+                candidates[p] = new RecordWriter(candidateFile(work, p), true);
+            }
+            try (RecordScanner scanner = new RecordScanner(layerFile(work, depth), true)) {
+                PackedState working = new PackedState(scanner.state, root.state.capacity); // Shares the scanner's buffer
+                for (long index = 0; scanner.next(); index++) {
+                    working.recount();
+                    if (working.isGoal()) {
+                        return index;
+                    }
+                    exhaustedBy = budget.check(expandedNodes, seenStates);
+                    if (exhaustedBy != null) {
+                        return -1;
+                    }
+                    expandedNodes++;
+                    for (int i = 0; i < width; i++) {
+                        for (int j = 0; j < width; j++) {
+                            if (options.movePruning != null && working.canPour(i, j) // Records keep no move amounts,
+                                    && options.movePruning.prune(working, i, j, -1, 0, false)) { // so only state-based rules apply
+                                continue;
+                            }
+                            int cost = working.pour(i, j);
+                            if (cost == 0) {
+                                continue;
+                            }
+                            written++;
+                            int partition = partitionOf(options.keyOf(working, scratch));
+                            candidates[partition].write(working.bottles, index, GenericSearch.encodeMove(i, j));
+                            working.unpour(i, j, cost);
+                        }
+                    }
+                }
+            }
+            generatedNodes += written;
+            return -1;
+        } finally {
+            for (RecordWriter writer : candidates) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+    }
+
+    // Remove duplicates and previously seen states from every candidate partition,
+    // then merge the survivors by generation order into the next layer; returns
+    // the layer's size
+    private long mergeCandidates(Path work, int depth) throws IOException {
+        for (int p = 0; p < partitions; p++) {
+            mergePartition(work, p);
+        }
+
+        RecordScanner[] survivors = new RecordScanner[partitions];
+        boolean[] hasNext = new boolean[partitions];
+        long layerSize = 0;
+        try (RecordWriter layer = new RecordWriter(layerFile(work, depth), true)) {
+            for (int p = 0; p < partitions; p++) {
+                survivors[p] = new RecordScanner(survivorFile(work, p), true);
+                hasNext[p] = survivors[p].next();
+            }
+            while (true) {
+                int first = -1;
+                for (int p = 0; p < partitions; p++) {
+                    if (hasNext[p] && (first < 0 || survivors[p].parent < survivors[first].parent
+                            || (survivors[p].parent == survivors[first].parent && survivors[p].move < survivors[first].move))) {
+                        first = p;
+                    }
+                }
+                if (first < 0) {
+                    break;
+                }
+                layer.write(survivors[first].state, survivors[first].parent, survivors[first].move);
+                layerSize++;
+                hasNext[first] = survivors[first].next();
+            }
+        } finally {
+            for (RecordScanner scanner : survivors) {
+                if (scanner != null) {
+                    scanner.close();
+                }
+            }
+        }
+        for (int p = 0; p < partitions; p++) {
+            Files.deleteIfExists(survivorFile(work, p));
+        }
+        return layerSize;
+    }
+
+    // Write the partition's new states, in generation order, to its survivor
+    // file and add them to its seen file
+    private void mergePartition(Path work, int partition) throws IOException {
+        Path candidateFile = candidateFile(work, partition);
+        long count = Files.size(candidateFile) / linkedBytes;
+        if (count * width > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Partition of " + count + " states does not fit in memory; use more partitions");
+        }
+        int n = (int) count;
+
+        // Load the partition with the duplicate-detection key of every state
+        long[] states = new long[n * width];
+        long[] keys = options.usesSymmetry() ? new long[n * width] : states;
+        long[] parents = new long[n];
+        int[] moveOf = new int[n];
+        long[] scratch = new long[width];
+        try (RecordScanner scanner = new RecordScanner(candidateFile, true)) {
+            PackedState state = new PackedState(scanner.state, root.state.capacity);
+            for (int k = 0; scanner.next(); k++) {
+                System.arraycopy(scanner.state, 0, states, k * width, width);
+                if (keys != states) {
+                    System.arraycopy(options.keyOf(state, scratch), 0, keys, k * width, width);
+                }
+                parents[k] = scanner.parent;
+                moveOf[k] = scanner.move;
+            }
+        }
+
+        // Sort by key, then by index, which is generation order since the layer is
+        // expanded in order; the first child of each state wins
+        int[] order = new int[n];
+        for (int k = 0; k < n; k++) {
+            order[k] = k;
+        }
+        sort(order, new int[n], 0, n, (a, b) -> {
+            int byKey = compare(keys, a * width, keys, b * width);
+            return byKey != 0 ? byKey : Integer.compare(a, b);
+        });
+
+        // Merge the sorted unique keys into the partition's sorted seen file
+        Path seenFile = seenFile(work, partition);
+        Path mergedFile = work.resolve("merged");
+        int[] survivors = new int[n];
+        int survivorCount = 0;
+        try (RecordScanner seen = new RecordScanner(seenFile, false);
+             RecordWriter merged = new RecordWriter(mergedFile, false)) {
+            boolean hasSeen = seen.next();
+            int previous = -1;
+            for (int k : order) {
+                if (previous >= 0 && compare(keys, previous * width, keys, k * width) == 0) {
+                    continue; // Later duplicate within the partition
+                }
+                previous = k;
+                int cmp = 1;
+                while (hasSeen && (cmp = compare(seen.state, 0, keys, k * width)) < 0) {
+                    merged.write(seen.state, 0, 0);
+                    hasSeen = seen.next();
+                }
+                if (hasSeen && cmp == 0) {
+                    continue; // Seen in an earlier layer; the seen record is copied later
+                }
+                merged.writeState(keys, k * width);
+                survivors[survivorCount++] = k;
+            }
+            while (hasSeen) {
+                merged.write(seen.state, 0, 0);
+                hasSeen = seen.next();
+            }
+        }
+        Files.move(mergedFile, seenFile, StandardCopyOption.REPLACE_EXISTING);
+        Files.delete(candidateFile);
+
+        Arrays.sort(survivors, 0, survivorCount);
+        try (RecordWriter writer = new RecordWriter(survivorFile(work, partition), true)) {
+            for (int s = 0; s < survivorCount; s++) {
+                int k = survivors[s];
+                writer.writeState(states, k * width, parents[k], moveOf[k]);
+            }
+        }
+    }
+
+    // Follow the parent indices back through the layer files, then replay the
+    // moves from the root to recover the path cost
+    private SearchResult rebuildPlan(Path work, int depth, long goalIndex) throws IOException {
+        int[] path = new int[depth];
+        long index = goalIndex;
+        ByteBuffer record = ByteBuffer.allocate(linkedBytes);
+        for (int d = depth; d > 0; d--) {
+            try (FileChannel channel = FileChannel.open(layerFile(work, d), StandardOpenOption.READ)) {
+                record.clear();
+                long position = index * linkedBytes;
+                while (record.hasRemaining()) {
+                    if (channel.read(record, position + record.position()) < 0) {
+                        throw new IOException("Truncated layer file at depth " + d);
+                    }
+                }
+            }
+            index = record.getLong(stateBytes);
+            path[d - 1] = record.getInt(stateBytes + Long.BYTES);
+        }
+
+        PackedState state = root.state.copy();
+        int cost = 0;
+        for (int move : path) {
+            cost += state.pour(GenericSearch.moveSource(move), GenericSearch.moveTarget(move));
+        }
+        return new SearchResult(path, cost, expandedNodes, generatedNodes, generatedNodes - seenStates, peakLayer, seenStates);
+    }
+
+    // Stable merge sort of the indices in order[from, to)
+    private static void sort(int[] order, int[] buffer, int from, int to, IntBinaryOperator comparator) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        sort(order, buffer, from, mid, comparator);
+        sort(order, buffer, mid, to, comparator);
+        if (comparator.applyAsInt(order[mid - 1], order[mid]) <= 0) {
+            return; // Already in order
+        }
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int k = from; k < to; k++) {
+            if (right >= to || (left < mid && comparator.applyAsInt(buffer[left], buffer[right]) <= 0)) {
+                order[k] = buffer[left++];
+            } else {
+                order[k] = buffer[right++];
+            }
+        }
+    }
+
+    private int partitionOf(long[] key) {
+        long mixed = (StateSet.hash(key) * 0x9E3779B9L) & 0xFFFFFFFFL;
+        return (int) ((mixed * partitions) >>> 32);
+    }
+
+    private int compare(long[] a, int aBase, long[] b, int bBase) {
+        for (int i = 0; i < width; i++) {
+            int cmp = Long.compare(a[aBase + i], b[bBase + i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private static Path layerFile(Path work, int depth) {
+        return work.resolve("layer-" + depth);
+    }
+
+    private static Path candidateFile(Path work, int partition) {
+        return work.resolve("candidates-" + partition);
+    }
+
+    private static Path survivorFile(Path work, int partition) {
+        return work.resolve("survivors-" + partition);
+    }
+
+    private static Path seenFile(Path work, int partition) {
+        return work.resolve("seen-" + partition);
+    }
+
+    private static void deleteAll(Path work) {
+        try (Stream<Path> files = Files.walk(work)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        } catch (IOException e) {
+            // Leftover files in the work directory are harmless
+        }
+    }
+
+    // Buffered writer of fixed-width records, with or without parent links
+    private final class RecordWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER);
+        private final boolean linked;
+
+        RecordWriter(Path file, boolean linked) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.linked = linked;
+        }
+
+        void write(long[] state, long parent, int move) throws IOException {
+            writeState(state, 0, parent, move);
+        }
+
+        void writeState(long[] states, int base) throws IOException {
+            writeState(states, base, 0, 0);
+        }
+
+        void writeState(long[] states, int base, long parent, int move) throws IOException {
+            if (buffer.remaining() < linkedBytes) {
+                drain();
+            }
+            for (int i = 0; i < width; i++) {
+                buffer.putLong(states[base + i]);
+            }
+            if (linked) {
+                buffer.putLong(parent);
+                buffer.putInt(move);
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            drain();
+            channel.close();
+        }
+    }
+
+    // Sequential reader that maps the file one window at a time; a missing file
+    // reads as empty
+    private final class RecordScanner implements AutoCloseable {
+        final long[] state = new long[width];
+        long parent;
+        int move;
+
+        private final FileChannel channel;
+        private final int recordBytes;
+        private final long size;
+        private MappedByteBuffer window;
+        private long windowEnd; // File offset just past the mapped window
+
+        RecordScanner(Path file, boolean linked) throws IOException {
+            this.recordBytes = linked ? linkedBytes : stateBytes;
+            if (Files.exists(file)) {
+                this.channel = FileChannel.open(file, StandardOpenOption.READ);
+                this.size = channel.size();
+            } else {
+                this.channel = null;
+                this.size = 0;
+            }
+        }
+
+        // Load the next record into state, parent and move; false at the end
+        boolean next() throws IOException {
+            if (window == null || !window.hasRemaining()) {
+                if (windowEnd >= size) {
+                    return false;
+                }
+                long records = Math.max(1, MAP_WINDOW / recordBytes); // Windows hold whole records
+                long length = Math.min(records * recordBytes, size - windowEnd);
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowEnd, length);
+                windowEnd += length;
+            }
+            for (int i = 0; i < width; i++) {
+                state[i] = window.getLong();
+            }
+            if (recordBytes == linkedBytes) {
+                parent = window.getLong();
+                move = window.getInt();
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package code;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Stack;
@@ -9,35 +11,125 @@ public abstract class GenericSearch {
     protected Node root; // The root node of the search tree
     protected Queue<Node> bfsQueue; // Queue for BFS
     protected Stack<Node> dfsStack; // Stack for DFS
-    protected PriorityQueue<Node> priorityQueue; // Priority queue for UCS, Greedy, and A*
-    protected HashSet<String> explored; // Set to track explored nodes
-    protected HashSet<String> generatedNodes = new HashSet<>(); // Set to track explored nodes
-    protected HashSet<String> statesEntered = new HashSet<>();
+    protected Queue<Node> priorityQueue; // Priority queue for UCS, Greedy, and A*
+    protected StateTable generatedNodes; // Set to track generated nodes
     protected int expandedNodes; // Count of nodes expanded during search
+    protected long generatedCount; // Successors produced by legal pours
+    protected long duplicateCount; // Successors dropped by duplicate detection
+    protected long peakFrontier; // Largest frontier after an expansion
+    protected long peakClosed; // Most states kept for duplicate detection, if not in generatedNodes
+    protected SearchBudget budget; // Limits checked once per expansion
+    protected SearchBudget.Limit exhaustedBy; // The limit that ran out, null while within budget
+    private Node closest; // Expanded node with the fewest out-of-place layers, the partial plan if the budget runs out
+    protected SearchOptions options; // Optional settings such as symmetry reduction
+    private long[] canonicalKey; // Scratch buffer for canonical duplicate keys
+    private final List<OffHeapStateSet> offHeapTables = new ArrayList<>(); // Freed by release
+    protected PatternDatabase patternDatabase; // Tables for H3, null unless the strategy uses them
 
     // Constructor
     public GenericSearch(Node root,String strategy) {
+        this(root, strategy, new SearchOptions());
+    }
+
+    public GenericSearch(Node root, String strategy, SearchOptions options) {
         this.root = root;
-        this.explored = new HashSet<>(); // Initialize the explored set
+        this.options = options;
+        this.canonicalKey = new long[root.state.size()];
+        int width = root.state.size(); // Every state has one long per bottle
+        if (options.bitstateBytes > 0 && (strategy.equals("DF") || strategy.startsWith("GR"))) {
+            this.generatedNodes = new BitStateSet(options.bitstateBytes, options.bitstateHashes);
+        } else if (options.offHeapStates > 0 && usesGeneratedSet(strategy)) {
+            this.generatedNodes = newStateTable();
+        } else {
+            this.generatedNodes = new StateSet(width);
+        }
         this.expandedNodes = 0;
+        this.budget = new SearchBudget(options);
         this.bfsQueue = new LinkedList<>(); // Initialize the BFS queue
         this.dfsStack = new Stack<>(); // Initialize the DFS stack
-        this.priorityQueue = new PriorityQueue<>(new NodeComparator(strategy)); // Initialize the priority queue
+        this.priorityQueue = newPriorityQueue(strategy); // Initialize the priority queue
+        if (strategy.equals("GR3") || strategy.equals("AS3") || strategy.equals("BS3")) {
+            this.patternDatabase = PatternDatabase.forPuzzle(root.state, options.patternDirectory);
+        }
     }
 
 
     
 
-    // Method to add a node to the frontier based on the search strategy
+    // Strategies whose loops use the duplicate set of this class
+    private boolean usesGeneratedSet(String strategy) {
+        switch (strategy) {
+            case "BF":
+                return options.externalDirectory == null && options.parallelism == 1;
+            case "AS1":
+            case "AS2":
+            case "AS3":
+                return options.parallelism == 1;
+            case "DF":
+            case "UC":
+            case "GR1":
+            case "GR2":
+            case "GR3":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // A table of visited states with values: off the heap if the options size
+    // one, to be freed by release, otherwise a growing StateSet
+    protected ValuedStateTable newStateTable() {
+        int width = root.state.size();
+        if (options.offHeapStates > 0) {
+            OffHeapStateSet table = new OffHeapStateSet(width, options.offHeapStates);
+            offHeapTables.add(table);
+            return table;
+        }
+        return new StateSet(width, StateSet.DEFAULT_CAPACITY, StateSet.DEFAULT_LOAD_FACTOR, true);
+    }
+
+    // Free the off-heap tables once the search is over
+    protected void release() {
+        for (OffHeapStateSet table : offHeapTables) {
+            table.close();
+        }
+        offHeapTables.clear();
+    }
+
+    // Integer keys let best-first strategies use buckets instead of a binary heap
+    private Queue<Node> newPriorityQueue(String strategy) {
+        switch (strategy) {
+            case "UC":
+            case "GR1":
+            case "GR2":
+            case "GR3":
+            case "AS1":
+            case "AS2":
+            case "AS3":
+                if (options.bucketQueue) {
+                    BucketQueue.TieBreak tieBreak = options.tieBreak != null
+                            ? options.tieBreak : BucketQueue.defaultTieBreak(strategy);
+                    return new BucketQueue(strategy, tieBreak);
+                }
+                return new PriorityQueue<>(new NodeComparator(strategy));
+            default:
+                return new PriorityQueue<>(new NodeComparator(strategy));
+        }
+    }
+
     // Method to add a node to the frontier based on the search strategy
     protected void addToFrontier(Node node, String strategy) {
-        statesEntered.add(node.getStateKey()); // Track states that have been entered
-    
-        // Calculate heuristics based on the strategy before adding to the frontier
-        if (strategy.equals("GR1") || strategy.equals("AS1")) {
+        // Calculate heuristics based on the strategy before adding to the frontier,
+        // or queue children under a bound if the evaluation is deferred
+        if (node.parent != null && defersHeuristic(strategy)) {
+            node.heuristicValue = deferredHeuristic(strategy, node.parent.heuristicValue, node.moveAmount);
+            node.deferred = true;
+        } else if (strategy.equals("GR1") || strategy.equals("AS1")) {
             node.heuristicValue = node.calculateH1(); // Calculate H1 for GR1 and AS1
         } else if (strategy.equals("GR2") || strategy.equals("AS2")) {
             node.heuristicValue = node.calculateH2(); // Calculate H2 for GR2 and AS2
+        } else if (strategy.equals("GR3") || strategy.equals("AS3")) {
+            node.heuristicValue = node.calculateH3(patternDatabase); // Calculate H3 for GR3 and AS3
         }
     
         // Add the node to the appropriate data structure based on the strategy
@@ -53,20 +145,65 @@ public abstract class GenericSearch {
             case "AS2": // A* Search with Heuristic 2
             case "GR1": // Greedy Search with Heuristic 1
             case "GR2": // Greedy Search with Heuristic 2
+            case "AS3": // A* Search with Heuristic 3
+            case "GR3": // Greedy Search with Heuristic 3
                 priorityQueue.add(node); // Add node to the priority queue
                 break;
-            case "ID":
-                dfsStack.push(node); // Push node onto the stack for IDS
-                break;
             default:
                 throw new IllegalArgumentException("Invalid search strategy: " + strategy);
         }
     }
     
 
-    // Method to clear the explored set and frontiers for a new search
+    // Heuristic of a state for the greedy and A* strategies, 0 for the others
+    protected int heuristic(PackedState state, String strategy) {
+        switch (strategy) {
+            case "GR1":
+            case "AS1":
+                return state.h1();
+            case "GR2":
+            case "AS2":
+                return state.h2();
+            case "GR3":
+            case "AS3":
+                return patternDatabase.h3(state);
+            default:
+                return 0;
+        }
+    }
+
+    protected boolean defersHeuristic(String strategy) {
+        return options.lazyHeuristic && (strategy.startsWith("GR") || strategy.startsWith("AS"));
+    }
+
+    // Heuristic a child is queued with until it is evaluated: the parent's for
+    // greedy, and for A* the parent's minus the pour's cost, which is no higher
+    // than the child's own when the heuristic is consistent (as H3 is), so no
+    // node comes out later than with eager evaluation
+    protected static int deferredHeuristic(String strategy, int parentHeuristic, int cost) {
+        return strategy.startsWith("AS") ? Math.max(0, parentHeuristic - cost) : parentHeuristic;
+    }
+
+    // Poll the priority queue. A node with a deferred heuristic is evaluated
+    // when it reaches the front and queued again if its key went up
+    protected Node pollPriorityQueue(String strategy) {
+        while (true) {
+            Node node = priorityQueue.poll();
+            if (!node.deferred) {
+                return node;
+            }
+            node.deferred = false;
+            int bound = node.heuristicValue;
+            node.heuristicValue = heuristic(node.state, strategy);
+            if (node.heuristicValue <= bound) {
+                return node;
+            }
+            priorityQueue.add(node);
+        }
+    }
+
+    // Method to clear the frontiers for a new search
     protected void reset() {
-        explored.clear(); // Clear explored nodes
         expandedNodes = 0; // Reset the expanded nodes count
         bfsQueue.clear(); // Clear the BFS queue
         dfsStack.clear(); // Clear the DFS stack
@@ -76,13 +213,165 @@ public abstract class GenericSearch {
     // Method to expand a node and add its children to the frontier
     protected void expandNode(Node node, String strategy) {
         expandedNodes++; // Increment the count of expanded nodes
-        explored.add(node.getStateKey()); // Mark the node's state key as explored
-    
-        for (Node child : node.getChildren()) {
-            if (!generatedNodes.contains(child.getStateKey())) { // Check if the child's state has been explored
-                generatedNodes.add(child.getStateKey());
-                addToFrontier(child, strategy); // Add valid children to the frontier
+        noteClosest(node);
+
+        // Apply each pour to a working copy and undo it afterwards, so only
+        // children that pass the duplicate check are allocated
+        PackedState working = node.state.copy();
+        int size = working.size();
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (isPruned(working, i, j, node.move, node.moveAmount, false)) {
+                    continue;
+                }
+                int cost = working.pour(i, j); // 0 if the pour is not valid
+                if (cost == 0) {
+                    continue;
+                }
+                generatedCount++;
+                if (generatedNodes.add(keyOf(working))) { // Check if the child's state has been generated before
+                    addToFrontier(node.createChild(working.copy(), i, j, cost), strategy); // Add valid children to the frontier
+                } else {
+                    duplicateCount++;
+                }
+                working.unpour(i, j, cost);
+            }
+        }
+        peakFrontier = Math.max(peakFrontier, frontierSize(strategy));
+    }
+
+    private int frontierSize(String strategy) {
+        switch (strategy) {
+            case "BF":
+                return bfsQueue.size();
+            case "DF":
+                return dfsStack.size();
+            default:
+                return priorityQueue.size();
+        }
+    }
+
+    // Result for a goal node, with the counters of this search
+    protected SearchResult result(Node goal) {
+        int[] moves = movesOf(goal);
+        return result(moves, moves.length, goal.pathCost);
+    }
+
+    // Result for the first length encoded moves, with the counters of this search
+    protected SearchResult result(int[] moves, int length, int cost) {
+        return withOmission(new SearchResult(Arrays.copyOf(moves, length), cost, expandedNodes, generatedCount,
+                duplicateCount, peakFrontier, closedSize()));
+    }
+
+    protected SearchResult noSolution() {
+        return withOmission(SearchResult.noSolution(expandedNodes, generatedCount, duplicateCount, peakFrontier,
+                closedSize()));
+    }
+
+    // Report how likely bitstate hashing dropped a new state as a duplicate
+    private SearchResult withOmission(SearchResult result) {
+        if (generatedNodes instanceof BitStateSet) {
+            result.setOmissionProbability(((BitStateSet) generatedNodes).omissionProbability());
+        }
+        return result;
+    }
+
+    // Keep the expanded node with the fewest out-of-place layers
+    protected void noteClosest(Node node) {
+        if (closest == null || node.state.h2() < closest.state.h2()) {
+            closest = node;
+        }
+    }
+
+    // Check the budget before an expansion, remembering the limit that ran out.
+    // An off-heap table that could not take every child of one more expansion
+    // counts as the closed-state limit, so a full table ends the search with a
+    // partial plan instead of failing inside an insert
+    protected boolean outOfBudget() {
+        exhaustedBy = budget.check(expandedNodes, closedSize());
+        if (exhaustedBy == null && offHeapFull()) {
+            exhaustedBy = SearchBudget.Limit.CLOSED_STATES;
+        }
+        return exhaustedBy != null;
+    }
+
+    private boolean offHeapFull() {
+        int width = root.state.size();
+        long children = (long) width * (width - 1); // Most pours out of one state
+        for (OffHeapStateSet table : offHeapTables) {
+            if (table.remaining() < children) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Result of a node-based search stopped by its budget
+    protected SearchResult exhausted() {
+        return exhausted(closest == null ? null : movesOf(closest));
+    }
+
+    protected SearchResult exhausted(int[] partialMoves) {
+        SearchResult result = noSolution();
+        result.setExhausted(exhaustedBy, partialMoves);
+        return result;
+    }
+
+    // The duplicate set only grows, so its final size is its peak
+    private long closedSize() {
+        return Math.max(peakClosed, generatedNodes.size());
+    }
+
+    // Check if the move pruning rules skip a pour; see MovePruning for lastMove,
+    // lastAmount and pathOnly
+    protected boolean isPruned(PackedState state, int source, int target, int lastMove, int lastAmount, boolean pathOnly) {
+        return options.movePruning != null && state.canPour(source, target)
+                && options.movePruning.prune(state, source, target, lastMove, lastAmount, pathOnly);
+    }
+
+    // Key used for duplicate detection: the packed bottles themselves, or a
+    // canonical form when symmetry reduction is enabled. Nodes keep their real
+    // states, so plans always refer to the original bottle indices
+    protected long[] keyOf(PackedState state) {
+        return options.keyOf(state, canonicalKey);
+    }
+
+    // Moves are encoded as source * 65536 + target
+    protected static int encodeMove(int source, int target) {
+        return (source << 16) | target;
+    }
+
+    protected static int moveSource(int move) {
+        return move >>> 16;
+    }
+
+    protected static int moveTarget(int move) {
+        return move & 0xFFFF;
+    }
+
+    // Method to build the operator list by following parent links from the goal
+    protected static String buildPlan(Node goalNode) {
+        return buildPlan(movesOf(goalNode), goalNode.depth);
+    }
+
+    // Encoded moves from the root to the node
+    protected static int[] movesOf(Node goal) {
+        int[] moves = new int[goal.depth];
+        for (Node node = goal; node.parent != null; node = node.parent) {
+            moves[node.depth - 1] = node.move;
+        }
+        return moves;
+    }
+
+    // Method to build the operator list for a sequence of encoded moves
+    protected static String buildPlan(int[] moves, int length) {
+        StringBuilder planBuilder = new StringBuilder();
+        for (int k = 0; k < length; k++) {
+            if (k > 0) {
+                planBuilder.append(',');
             }
+            planBuilder.append("pour_").append(moveSource(moves[k])).append('_').append(moveTarget(moves[k]));
         }
+        return planBuilder.toString();
     }
 }
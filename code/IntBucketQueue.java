@@ -0,0 +1,126 @@
+package code;
+
+// BucketQueue for NodePool indices: the same keys and tie-breaking, but every
+// sub-bucket is a ring buffer of ints instead of a deque of Node objects, so
+// the frontier holds no references. Nodes are served in exactly the order a
+// BucketQueue would serve the equivalent Node objects.
+public class IntBucketQueue {
+    private final int keyType;
+    private final BucketQueue.TieBreak tieBreak;
+    private Bucket[] buckets = new Bucket[16];
+    private int minKey; // No bucket below this key holds a node
+    private int size;
+
+    public IntBucketQueue(String strategy, BucketQueue.TieBreak tieBreak) {
+        this.keyType = BucketQueue.keyType(strategy);
+        this.tieBreak = tieBreak;
+    }
+
+    public void add(int node, int pathCost, int heuristic) {
+        int key = BucketQueue.key(keyType, pathCost, heuristic);
+        if (key < 0) {
+            throw new IllegalArgumentException("Negative priority: " + key);
+        }
+        if (key >= buckets.length) {
+            Bucket[] grown = new Bucket[Math.max(key + 1, buckets.length * 2)];
+            System.arraycopy(buckets, 0, grown, 0, buckets.length);
+            buckets = grown;
+        }
+        if (buckets[key] == null) {
+            buckets[key] = new Bucket(tieBreak == BucketQueue.TieBreak.HIGH_G);
+        }
+        buckets[key].add(BucketQueue.tieKey(tieBreak, pathCost, heuristic), node);
+        if (size == 0 || key < minKey) {
+            minKey = key;
+        }
+        size++;
+    }
+
+    // Remove and return the best node, or -1 if the queue is empty
+    public int poll() {
+        if (size == 0) {
+            return -1;
+        }
+        while (buckets[minKey] == null || buckets[minKey].size == 0) {
+            minKey++;
+        }
+        size--;
+        return buckets[minKey].poll(tieBreak == BucketQueue.TieBreak.FIFO);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Nodes sharing one key, split by tie-breaking key
+    private static final class Bucket {
+        private final boolean preferHigh; // Serve the highest tie key first instead of the lowest
+        private IntRing[] slots = new IntRing[4];
+        private int best; // Tie key to serve next (all better slots are empty)
+        private int size;
+
+        Bucket(boolean preferHigh) {
+            this.preferHigh = preferHigh;
+        }
+
+        void add(int tieKey, int node) {
+            if (tieKey >= slots.length) {
+                IntRing[] grown = new IntRing[Math.max(tieKey + 1, slots.length * 2)];
+                System.arraycopy(slots, 0, grown, 0, slots.length);
+                slots = grown;
+            }
+            if (slots[tieKey] == null) {
+                slots[tieKey] = new IntRing();
+            }
+            slots[tieKey].addLast(node);
+            if (size == 0 || (preferHigh ? tieKey > best : tieKey < best)) {
+                best = tieKey;
+            }
+            size++;
+        }
+
+        int poll(boolean fifo) {
+            while (slots[best] == null || slots[best].size == 0) {
+                best += preferHigh ? -1 : 1;
+            }
+            size--;
+            return fifo ? slots[best].pollFirst() : slots[best].pollLast();
+        }
+    }
+
+    // Growable ring buffer of ints
+    private static final class IntRing {
+        private int[] items = new int[8];
+        private int head;
+        private int size;
+
+        void addLast(int item) {
+            if (size == items.length) {
+                int[] grown = new int[items.length * 2];
+                for (int k = 0; k < size; k++) {
+                    grown[k] = items[(head + k) & (items.length - 1)];
+                }
+                items = grown;
+                head = 0;
+            }
+            items[(head + size) & (items.length - 1)] = item;
+            size++;
+        }
+
+        int pollFirst() {
+            int item = items[head];
+            head = (head + 1) & (items.length - 1);
+            size--;
+            return item;
+        }
+
+        int pollLast() {
+            size--;
+            return items[(head + size) & (items.length - 1)];
+        }
+    }
+}
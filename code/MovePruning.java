@@ -0,0 +1,103 @@
+package code;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Rules that drop pours which never appear on a cheapest plan, applied while a
+// node is expanded. Every rule removes a pour that leads to a state equal to an
+// already reachable one up to bottle order (or to the grandparent) at no lower
+// cost, so optimal strategies stay optimal:
+//
+// - UNIFORM_TO_EMPTY: pouring a uniform bottle into an empty one only moves it.
+// - EMPTY_TARGET: of several empty bottles, only the first one is poured into.
+// - REVERSE: pouring back exactly what the previous pour moved.
+// - COMMUTING: partial-order reduction. Pours on disjoint bottle pairs commute,
+//   so after one pour the other is only tried if it sorts after it. Pours into
+//   empty bottles are left alone so this does not fight EMPTY_TARGET. Which
+//   pours survive depends on the path to a state, so with a closed set the
+//   other order could be dropped as a duplicate; only searches that check
+//   duplicates along the current path alone (ID, IDA1, IDA2 without a
+//   transposition table) apply it.
+//
+// The number of successors each rule removed is counted; the counters are
+// shared by every search that uses this object.
+public class MovePruning {
+    public enum Rule {
+        UNIFORM_TO_EMPTY,
+        EMPTY_TARGET,
+        REVERSE,
+        COMMUTING
+    }
+
+    private final EnumSet<Rule> rules;
+    private final AtomicLongArray pruned = new AtomicLongArray(Rule.values().length);
+
+    public MovePruning() {
+        this(EnumSet.allOf(Rule.class));
+    }
+
+    public MovePruning(Set<Rule> rules) {
+        this.rules = rules.isEmpty() ? EnumSet.noneOf(Rule.class) : EnumSet.copyOf(rules);
+    }
+
+    // Check if a legal pour should be skipped, counting the rule that removed it.
+    // lastMove is the pour that produced the state (-1 at the root), lastAmount
+    // the number of layers it moved, and pathOnly tells whether the search
+    // detects duplicates along the current path only
+    public boolean prune(PackedState state, int source, int target, int lastMove, int lastAmount, boolean pathOnly) {
+        Rule rule = ruleFor(state, source, target, lastMove, lastAmount, pathOnly);
+        if (rule == null) {
+            return false;
+        }
+        pruned.incrementAndGet(rule.ordinal());
+        return true;
+    }
+
+    private Rule ruleFor(PackedState state, int source, int target, int lastMove, int lastAmount, boolean pathOnly) {
+        boolean targetEmpty = state.isEmpty(target);
+        if (targetEmpty && rules.contains(Rule.UNIFORM_TO_EMPTY) && state.isUniform(source)) {
+            return Rule.UNIFORM_TO_EMPTY;
+        }
+        if (targetEmpty && rules.contains(Rule.EMPTY_TARGET)) {
+            for (int k = 0; k < target; k++) {
+                if (k != source && state.isEmpty(k)) {
+                    return Rule.EMPTY_TARGET;
+                }
+            }
+        }
+        if (lastMove < 0) {
+            return null;
+        }
+        int lastSource = GenericSearch.moveSource(lastMove);
+        int lastTarget = GenericSearch.moveTarget(lastMove);
+        if (rules.contains(Rule.REVERSE) && source == lastTarget && target == lastSource
+                && Math.min(state.topRun(source), state.capacity - state.count(target)) == lastAmount) {
+            return Rule.REVERSE;
+        }
+        if (pathOnly && rules.contains(Rule.COMMUTING) && !targetEmpty
+                && source != lastSource && source != lastTarget && target != lastSource && target != lastTarget
+                && state.count(lastTarget) != lastAmount // The previous pour did not fill an empty bottle
+                && GenericSearch.encodeMove(source, target) < lastMove) {
+            return Rule.COMMUTING;
+        }
+        return null;
+    }
+
+    // Rules this object applies
+    Set<Rule> rules() {
+        return rules;
+    }
+
+    // Number of successors removed by the rule so far
+    public long prunedBy(Rule rule) {
+        return pruned.get(rule.ordinal());
+    }
+
+    public long prunedTotal() {
+        long total = 0;
+        for (int k = 0; k < pruned.length(); k++) {
+            total += pruned.get(k);
+        }
+        return total;
+    }
+}
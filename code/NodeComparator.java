@@ -3,10 +3,16 @@ import java.util.Comparator;
 
 public class NodeComparator implements Comparator<Node> {
     private final String strategy; // Store the strategy type (UCS, Greedy, A*)
+    private final double weight; // Heuristic weight for ARA1 and ARA2
 
     // Constructor to initialize the strategy
     public NodeComparator(String strategy) {
+        this(strategy, 1);
+    }
+
+    public NodeComparator(String strategy, double weight) {
         this.strategy = strategy;
+        this.weight = weight;
     }
 
     @Override
@@ -18,16 +24,31 @@ public class NodeComparator implements Comparator<Node> {
 
             case "GR1": // Greedy Search with Heuristic 1
             case "GR2": // Greedy Search with Heuristic 2
+            case "GR3": // Greedy Search with Heuristic 3
                 // For Greedy Search, compare based on heuristic value (h(n))
                 return Integer.compare(n1.heuristicValue, n2.heuristicValue);
 
             case "AS1": // A* Search with Heuristic 1
             case "AS2": // A* Search with Heuristic 2
+            case "AS3": // A* Search with Heuristic 3
                 // For A*, compare based on f(n) = g(n) + h(n)
                 int f1 = n1.pathCost + n1.heuristicValue; // Total cost for n1
                 int f2 = n2.pathCost + n2.heuristicValue; // Total cost for n2
                 return Integer.compare(f1, f2);
 
+            case "ARA1": // Anytime A* with Heuristic 1
+            case "ARA2": // Anytime A* with Heuristic 2
+                // For weighted A*, compare based on g(n) + w * h(n), deeper nodes first on ties
+                int byKey = Double.compare(n1.pathCost + weight * n1.heuristicValue, n2.pathCost + weight * n2.heuristicValue);
+                return byKey != 0 ? byKey : Integer.compare(n2.pathCost, n1.pathCost);
+
+            case "BS1": // Beam Search with Heuristic 1
+            case "BS2": // Beam Search with Heuristic 2
+            case "BS3": // Beam Search with Heuristic 3
+                // For beam search, compare based on h(n), cheaper paths first on ties
+                int byH = Integer.compare(n1.heuristicValue, n2.heuristicValue);
+                return byH != 0 ? byH : Integer.compare(n1.pathCost, n2.pathCost);
+
             default:
                 throw new IllegalArgumentException("Invalid search strategy: " + strategy);
         }
@@ -0,0 +1,136 @@
+package code;
+
+// Search nodes stored as parallel primitive arrays instead of Node objects.
+// Node k is the int k: its parent's index, the pour that produced it (source
+// and target bottle as bytes), path cost, heuristic value and depth sit at
+// index k of their arrays, and its bottles at states[k * width ..]. A node
+// costs 18 bytes plus its packed bottles, with no object headers, parent
+// references, PackedState wrappers or operator strings; operators are only
+// built for the final plan. Nodes are never removed, so indices stay valid.
+public class NodePool {
+    static final int MAX_BOTTLES = 256; // Source and target must fit in a byte
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private final int width; // Number of bottles per state
+    private int[] parents; // -1 for the root
+    private byte[] sources;
+    private byte[] targets;
+    private int[] pathCosts;
+    private int[] heuristics;
+    private int[] depths;
+    private long[] states; // Node k holds states[k * width .. k * width + width - 1]
+    private int size;
+
+    public NodePool(int width) {
+        if (width <= 0 || width > MAX_BOTTLES) {
+            throw new IllegalArgumentException("NodePool needs 1 to " + MAX_BOTTLES + " bottles: " + width);
+        }
+        this.width = width;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        if ((long) capacity * width > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("NodePool cannot hold " + capacity + " states of width " + width);
+        }
+        parents = grow(parents, capacity);
+        sources = grow(sources, capacity);
+        targets = grow(targets, capacity);
+        pathCosts = grow(pathCosts, capacity);
+        heuristics = grow(heuristics, capacity);
+        depths = grow(depths, capacity);
+        long[] grown = new long[capacity * width];
+        if (states != null) {
+            System.arraycopy(states, 0, grown, 0, size * width);
+        }
+        states = grown;
+    }
+
+    private int[] grow(int[] array, int capacity) {
+        int[] grown = new int[capacity];
+        if (array != null) {
+            System.arraycopy(array, 0, grown, 0, size);
+        }
+        return grown;
+    }
+
+    private byte[] grow(byte[] array, int capacity) {
+        byte[] grown = new byte[capacity];
+        if (array != null) {
+            System.arraycopy(array, 0, grown, 0, size);
+        }
+        return grown;
+    }
+
+    // Store the root state and return its index
+    public int addRoot(long[] bottles, int heuristic) {
+        return add(bottles, -1, 0, 0, 0, heuristic);
+    }
+
+    // Store the child reached from parent by pouring source into target, with
+    // the bottles after the pour, and return its index
+    public int add(long[] bottles, int parent, int source, int target, int pathCost, int heuristic) {
+        if (size == parents.length) {
+            allocate(parents.length * 2);
+        }
+        int node = size++;
+        parents[node] = parent;
+        sources[node] = (byte) source;
+        targets[node] = (byte) target;
+        pathCosts[node] = pathCost;
+        heuristics[node] = heuristic;
+        depths[node] = parent < 0 ? 0 : depths[parent] + 1;
+        System.arraycopy(bottles, 0, states, node * width, width);
+        return node;
+    }
+
+    // Copy the node's bottles into a state of the same width and recount its heuristic sums
+    public void load(int node, PackedState into) {
+        System.arraycopy(states, node * width, into.bottles, 0, width);
+        into.recount();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int parent(int node) {
+        return parents[node];
+    }
+
+    public int pathCost(int node) {
+        return pathCosts[node];
+    }
+
+    public int heuristic(int node) {
+        return heuristics[node];
+    }
+
+    // Replace a deferred heuristic value once it is evaluated
+    public void setHeuristic(int node, int heuristic) {
+        heuristics[node] = heuristic;
+    }
+
+    public int depth(int node) {
+        return depths[node];
+    }
+
+    // Encoded pour that produced the node (see GenericSearch.encodeMove), -1 for the root
+    public int move(int node) {
+        return parents[node] < 0 ? -1 : GenericSearch.encodeMove(sources[node] & 0xFF, targets[node] & 0xFF);
+    }
+
+    // Layers moved by that pour
+    public int moveAmount(int node) {
+        return parents[node] < 0 ? 0 : pathCosts[node] - pathCosts[parents[node]];
+    }
+
+    // Encoded moves from the root to the node
+    public int[] moves(int node) {
+        int[] moves = new int[depths[node]];
+        for (int k = node; parents[k] >= 0; k = parents[k]) {
+            moves[depths[k] - 1] = move(k);
+        }
+        return moves;
+    }
+}
@@ -0,0 +1,205 @@
+package code;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Open-addressing hash table of packed states outside the Java heap, for
+// searches whose visited states would not fit under -Xmx or would make GC
+// pauses long. Each slot holds a 4-byte hash (0 marks a free slot), a 4-byte
+// value and the bottles, and slots are laid out in direct ByteBuffers of at
+// most 1 GiB. The table is sized once for maxStates and never grows. Adding
+// more states throws IllegalStateException, so searches check remaining()
+// first and stop on their closed-state limit instead. Direct memory is capped by
+// -XX:MaxDirectMemorySize, which defaults to the heap limit.
+//
+// close() frees the buffers at once through Unsafe.invokeCleaner when the JVM
+// provides it, and otherwise leaves them to the garbage collector; the table
+// cannot be used afterwards.
+public class OffHeapStateSet implements ValuedStateTable, AutoCloseable {
+    private static final int CHUNK_BYTES = 1 << 30;
+    private static final float LOAD_FACTOR = 0.7f;
+    private static final Object UNSAFE; // sun.misc.Unsafe, null if unavailable
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            unsafe = null; // Buffers are freed when they are collected
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final int width; // Number of bottles per state
+    private final int slotBytes;
+    private final long maxStates;
+    private final long mask; // Slots - 1, a power of two minus one
+    private final int chunkShift; // Slot k is in chunk k >>> chunkShift
+    private final long chunkMask;
+    private ByteBuffer[] chunks;
+    private int size;
+
+    public OffHeapStateSet(int width, long maxStates) {
+        if (width <= 0) {
+            throw new IllegalArgumentException("Invalid state width: " + width);
+        }
+        if (maxStates < 1 || maxStates > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Off-heap table needs 1 to " + Integer.MAX_VALUE + " states: " + maxStates);
+        }
+        this.width = width;
+        this.slotBytes = 8 + 8 * width;
+        this.maxStates = maxStates;
+        long slots = Long.highestOneBit((long) Math.ceil(maxStates / LOAD_FACTOR) - 1) << 1;
+        slots = Math.max(2, slots);
+        long perChunk = Math.min(slots, Integer.highestOneBit(CHUNK_BYTES / slotBytes));
+        if (perChunk < 1) {
+            throw new IllegalArgumentException("States of width " + width + " do not fit in a chunk");
+        }
+        this.mask = slots - 1;
+        this.chunkShift = Long.numberOfTrailingZeros(perChunk);
+        this.chunkMask = perChunk - 1;
+        this.chunks = new ByteBuffer[(int) (slots / perChunk)];
+        for (int k = 0; k < chunks.length; k++) {
+            chunks[k] = ByteBuffer.allocateDirect((int) (perChunk * slotBytes)).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    private ByteBuffer chunk(long slot) {
+        return chunks[(int) (slot >>> chunkShift)];
+    }
+
+    private int offset(long slot) {
+        return (int) (slot & chunkMask) * slotBytes;
+    }
+
+    // Slot holding the state, or -1 - slot of the free slot where it would go
+    private long find(long[] bottles, int hash) {
+        if (chunks == null) {
+            throw new IllegalStateException("OffHeapStateSet is closed");
+        }
+        long slot = (hash & 0xFFFFFFFFL) & mask;
+        while (true) {
+            ByteBuffer chunk = chunk(slot);
+            int offset = offset(slot);
+            int stored = chunk.getInt(offset);
+            if (stored == 0) {
+                return -1 - slot;
+            }
+            if (stored == hash && matches(chunk, offset, bottles)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean matches(ByteBuffer chunk, int offset, long[] bottles) {
+        for (int i = 0; i < width; i++) {
+            if (chunk.getLong(offset + 8 + 8 * i) != bottles[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insert(long slot, int hash, int value, long[] bottles) {
+        if (size >= maxStates) {
+            throw new IllegalStateException("OffHeapStateSet is full at " + size + " states");
+        }
+        ByteBuffer chunk = chunk(slot);
+        int offset = offset(slot);
+        chunk.putInt(offset, hash);
+        chunk.putInt(offset + 4, value);
+        for (int i = 0; i < width; i++) {
+            chunk.putLong(offset + 8 + 8 * i, bottles[i]);
+        }
+        size++;
+    }
+
+    @Override
+    public boolean contains(long[] bottles) {
+        return find(bottles, StateSet.hash(bottles)) >= 0;
+    }
+
+    @Override
+    public boolean add(long[] bottles) {
+        int hash = StateSet.hash(bottles);
+        long slot = find(bottles, hash);
+        if (slot >= 0) {
+            return false;
+        }
+        insert(-1 - slot, hash, 0, bottles);
+        return true;
+    }
+
+    @Override
+    public int valueOf(long[] bottles) {
+        long slot = find(bottles, StateSet.hash(bottles));
+        return slot >= 0 ? chunk(slot).getInt(offset(slot) + 4) : -1;
+    }
+
+    @Override
+    public boolean addOrLower(long[] bottles, int value) {
+        int hash = StateSet.hash(bottles);
+        long slot = find(bottles, hash);
+        if (slot >= 0) {
+            ByteBuffer chunk = chunk(slot);
+            int offset = offset(slot);
+            if (chunk.getInt(offset + 4) <= value) {
+                return false;
+            }
+            chunk.putInt(offset + 4, value);
+            return true;
+        }
+        insert(-1 - slot, hash, value, bottles);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Free every slot; touches the whole table
+    @Override
+    public void clear() {
+        for (long slot = 0; slot <= mask; slot++) {
+            chunk(slot).putInt(offset(slot), 0);
+        }
+        size = 0;
+    }
+
+    // States that can still be added before the table is full
+    public long remaining() {
+        return maxStates - size;
+    }
+
+    // Bytes of direct memory held by the table
+    public long allocatedBytes() {
+        return (mask + 1) * slotBytes;
+    }
+
+    @Override
+    public void close() {
+        if (chunks == null) {
+            return;
+        }
+        if (UNSAFE != null) {
+            for (ByteBuffer chunk : chunks) {
+                try {
+                    INVOKE_CLEANER.invoke(UNSAFE, chunk);
+                } catch (ReflectiveOperationException e) {
+                    break; // Left to the garbage collector
+                }
+            }
+        }
+        chunks = null;
+    }
+}
@@ -0,0 +1,412 @@
+package code;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class PackedState {
+    static final int BITS_PER_LAYER = 4; // Each layer is a 4-bit color code, 0 means empty
+    static final long LAYER_MASK = 0xFL;
+    static final int MAX_CAPACITY = 64 / BITS_PER_LAYER; // One long per bottle
+    static final String COLORS = "rgbyopcmwknstvl"; // Color code k is COLORS.charAt(k - 1); 'e' marks an empty slot
+    private static final long ONES = 0x1111111111111111L; // Lowest bit of every layer
+
+    final long[] bottles; // Bottle i packed bottom layer first in the lowest bits
+    final int capacity; // Maximum number of layers in every bottle
+
+    // Sums of the per-bottle heuristic contributions, kept up to date by pour and
+    // unpour from the two bottles they change, so h1, h2 and most goal tests are
+    // O(1). Code that writes bottles directly must call recount afterwards
+    private int nonUniformBottles;
+    private int outOfPlaceLayers;
+
+    public PackedState(long[] bottles, int capacity) {
+        this.bottles = bottles;
+        this.capacity = capacity;
+        recount();
+    }
+
+    private PackedState(long[] bottles, int capacity, int nonUniformBottles, int outOfPlaceLayers) {
+        this.bottles = bottles;
+        this.capacity = capacity;
+        this.nonUniformBottles = nonUniformBottles;
+        this.outOfPlaceLayers = outOfPlaceLayers;
+    }
+
+    // Recompute the heuristic sums from every bottle
+    public void recount() {
+        nonUniformBottles = 0;
+        outOfPlaceLayers = 0;
+        for (long bottle : bottles) {
+            add(bottle, 1);
+        }
+    }
+
+    // Add (sign 1) or remove (sign -1) one bottle's heuristic contributions
+    private void add(long bottle, int sign) {
+        if (!isUniform(bottle)) {
+            nonUniformBottles += sign;
+            outOfPlaceLayers += sign * countOutOfPlaceLayers(bottle, capacity);
+        }
+    }
+
+    // Pack parsed bottles into a state
+    public static PackedState fromBottles(ArrayList<Bottle> bottles, int capacity) {
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Bottle capacity " + capacity + " exceeds " + MAX_CAPACITY);
+        }
+        long[] packed = new long[bottles.size()];
+        for (int i = 0; i < bottles.size(); i++) {
+            long bottle = 0;
+            int layer = 0;
+            // The stack holds the bottom layer first
+            for (String color : bottles.get(i).layers) {
+                if (!color.equals("e")) {
+                    bottle |= (long) colorCode(color.charAt(0)) << (layer++ * BITS_PER_LAYER);
+                }
+            }
+            packed[i] = bottle;
+        }
+        return new PackedState(packed, capacity);
+    }
+
+    public static int colorCode(char color) {
+        int index = COLORS.indexOf(color);
+        if (index < 0) {
+            throw new IllegalArgumentException("Invalid color: " + color);
+        }
+        return index + 1;
+    }
+
+    public static char colorChar(int code) {
+        return code == 0 ? 'e' : COLORS.charAt(code - 1);
+    }
+
+    public int size() {
+        return bottles.length;
+    }
+
+    public PackedState copy() {
+        return new PackedState(bottles.clone(), capacity, nonUniformBottles, outOfPlaceLayers);
+    }
+
+    // Number of non-empty layers in a packed bottle; colors are never 0 so the
+    // highest set nibble marks the top layer
+    static int count(long bottle) {
+        return (64 - Long.numberOfLeadingZeros(bottle) + BITS_PER_LAYER - 1) / BITS_PER_LAYER;
+    }
+
+    // Color code of the top layer of a packed bottle, 0 if it is empty
+    static int top(long bottle) {
+        int count = count(bottle);
+        return count == 0 ? 0 : (int) ((bottle >>> ((count - 1) * BITS_PER_LAYER)) & LAYER_MASK);
+    }
+
+    // Mask covering the lowest n layers
+    static long lowMask(int layers) {
+        return layers >= MAX_CAPACITY ? -1L : (1L << (layers * BITS_PER_LAYER)) - 1;
+    }
+
+    public int count(int i) {
+        return count(bottles[i]);
+    }
+
+    public int top(int i) {
+        return top(bottles[i]);
+    }
+
+    // Number of layers in the top run of bottle i, 0 if it is empty
+    public int topRun(int i) {
+        long bottle = bottles[i];
+        int count = count(bottle);
+        long differing = bottle ^ (top(bottle) * ONES & lowMask(count)); // Non-zero layers differ from the top
+        return differing == 0 ? count : count - 1 - (63 - Long.numberOfLeadingZeros(differing)) / BITS_PER_LAYER;
+    }
+
+    public boolean isEmpty(int i) {
+        return bottles[i] == 0;
+    }
+
+    public boolean isFull(int i) {
+        return count(bottles[i]) >= capacity;
+    }
+
+    // Check if pouring from source into target is valid
+    public boolean canPour(int source, int target) {
+        long src = bottles[source];
+        long tgt = bottles[target];
+        if (source == target || src == 0 || count(tgt) >= capacity) {
+            return false;
+        }
+        return tgt == 0 || top(src) == top(tgt);
+    }
+
+    // Pour the top run of source into target in place and return the number of
+    // layers moved (0 if the pour is not valid)
+    public int pour(int source, int target) {
+        if (!canPour(source, target)) {
+            return 0;
+        }
+        long src = bottles[source];
+        long tgt = bottles[target];
+        int srcCount = count(src);
+        int tgtCount = count(tgt);
+        long color = top(src);
+        add(src, -1);
+        add(tgt, -1);
+
+        int amount = 0;
+        int room = capacity - tgtCount;
+        while (amount < room && amount < srcCount
+                && ((src >>> ((srcCount - 1 - amount) * BITS_PER_LAYER)) & LAYER_MASK) == color) {
+            tgt |= color << ((tgtCount + amount) * BITS_PER_LAYER);
+            amount++;
+        }
+        bottles[source] = src & lowMask(srcCount - amount);
+        bottles[target] = tgt;
+        add(bottles[source], 1);
+        add(tgt, 1);
+        return amount;
+    }
+
+    // Undo a pour of the given amount, moving the layers back from target to source
+    public void unpour(int source, int target, int amount) {
+        long tgt = bottles[target];
+        int tgtCount = count(tgt);
+        long color = top(tgt);
+        int srcCount = count(bottles[source]);
+        add(bottles[source], -1);
+        add(tgt, -1);
+        for (int k = 0; k < amount; k++) {
+            bottles[source] |= color << ((srcCount + k) * BITS_PER_LAYER);
+        }
+        bottles[target] = tgt & lowMask(tgtCount - amount);
+        add(bottles[source], 1);
+        add(bottles[target], 1);
+    }
+
+    // Check if all non-empty layers of bottle i have the same color
+    public boolean isUniform(int i) {
+        return isUniform(bottles[i]);
+    }
+
+    // Compare the bottle with its bottom color repeated over its layers
+    static boolean isUniform(long bottle) {
+        return bottle == ((bottle & LAYER_MASK) * ONES & lowMask(count(bottle)));
+    }
+
+    // Layers not matching the topmost slot of the bottle; an unfilled bottle has
+    // an empty topmost slot, so every colored layer counts as out of place
+    public int countOutOfPlaceLayers(int i) {
+        return countOutOfPlaceLayers(bottles[i], capacity);
+    }
+
+    static int countOutOfPlaceLayers(long bottle, int capacity) {
+        int count = count(bottle);
+        if (count < capacity) {
+            return count;
+        }
+        long differing = bottle ^ (top(bottle) * ONES & lowMask(count)); // Non-zero layers differ from the top
+        differing |= differing >>> 2;
+        differing |= differing >>> 1;
+        return Long.bitCount(differing & ONES);
+    }
+
+    // Goal: every bottle is uniform and no two non-empty bottles share a color.
+    // Colors are only compared once the counters show every bottle uniform
+    public boolean isGoal() {
+        if (nonUniformBottles != 0) {
+            return false;
+        }
+        int seenColors = 0;
+        for (int i = 0; i < bottles.length; i++) {
+            if (bottles[i] == 0) {
+                continue;
+            }
+            int bit = 1 << top(bottles[i]);
+            if ((seenColors & bit) != 0) {
+                return false;
+            }
+            seenColors |= bit;
+        }
+        return true;
+    }
+
+    // Heuristic 1: number of non-uniform bottles
+    public int h1() {
+        return nonUniformBottles;
+    }
+
+    // Heuristic 2: number of out-of-place layers in non-uniform bottles
+    public int h2() {
+        return outOfPlaceLayers;
+    }
+
+    // Write a representative of this state's symmetry class into out. Bottles are
+    // sorted if sortBottles is set; colors are relabelled by first appearance if
+    // renameColors is set, scanning bottles in order of their color pattern so
+    // the labels do not depend on bottle order. Equal outputs always mean the
+    // states are equivalent up to bottle order and color names
+    public void canonicalize(long[] out, boolean sortBottles, boolean renameColors) {
+        System.arraycopy(bottles, 0, out, 0, bottles.length);
+        if (renameColors) {
+            if (sortBottles) {
+                // Insertion sort by (pattern, value); there are only a few bottles
+                for (int i = 1; i < out.length; i++) {
+                    long bottle = out[i];
+                    long pattern = pattern(bottle);
+                    int k = i - 1;
+                    while (k >= 0 && comparePattern(out[k], pattern, bottle) > 0) {
+                        out[k + 1] = out[k];
+                        k--;
+                    }
+                    out[k + 1] = bottle;
+                }
+            }
+            renameColors(out);
+        }
+        if (sortBottles) {
+            Arrays.sort(out);
+        }
+    }
+
+    // Sorted canonical form as written by canonicalize with sortBottles set. The
+    // returned array holds, for each position of out, the index of the bottle it
+    // came from, so moves can be translated between equivalent states
+    public int[] canonicalOrder(long[] out, boolean renameColors) {
+        int[] order = new int[bottles.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        if (renameColors) {
+            sortOrder(order);
+            for (int i = 0; i < order.length; i++) {
+                out[i] = bottles[order[i]];
+            }
+            renameColors(out);
+        } else {
+            System.arraycopy(bottles, 0, out, 0, bottles.length);
+        }
+        // Insertion sort of out, carrying the bottle indices along
+        for (int i = 1; i < out.length; i++) {
+            long bottle = out[i];
+            int index = order[i];
+            int k = i - 1;
+            while (k >= 0 && out[k] > bottle) {
+                out[k + 1] = out[k];
+                order[k + 1] = order[k];
+                k--;
+            }
+            out[k + 1] = bottle;
+            order[k + 1] = index;
+        }
+        return order;
+    }
+
+    // Insertion sort of bottle indices by (pattern, value)
+    private void sortOrder(int[] order) {
+        for (int i = 1; i < order.length; i++) {
+            int index = order[i];
+            long bottle = bottles[index];
+            long pattern = pattern(bottle);
+            int k = i - 1;
+            while (k >= 0 && comparePattern(bottles[order[k]], pattern, bottle) > 0) {
+                order[k + 1] = order[k];
+                k--;
+            }
+            order[k + 1] = index;
+        }
+    }
+
+    // Relabel colors by first appearance, scanning the bottles in array order
+    private static void renameColors(long[] out) {
+        long map = 0; // Nibble c holds the new label of color c
+        int nextLabel = 1;
+        for (int i = 0; i < out.length; i++) {
+            long bottle = out[i];
+            long renamed = 0;
+            for (int layer = 0, count = count(bottle); layer < count; layer++) {
+                int color = (int) ((bottle >>> (layer * BITS_PER_LAYER)) & LAYER_MASK);
+                long label = (map >>> (color * BITS_PER_LAYER)) & LAYER_MASK;
+                if (label == 0) {
+                    label = nextLabel++;
+                    map |= label << (color * BITS_PER_LAYER);
+                }
+                renamed |= label << (layer * BITS_PER_LAYER);
+            }
+            out[i] = renamed;
+        }
+    }
+
+    // A bottle with its colors relabelled by first appearance from the bottom
+    static long pattern(long bottle) {
+        long map = 0;
+        int nextLabel = 1;
+        long pattern = 0;
+        for (int layer = 0, count = count(bottle); layer < count; layer++) {
+            int color = (int) ((bottle >>> (layer * BITS_PER_LAYER)) & LAYER_MASK);
+            long label = (map >>> (color * BITS_PER_LAYER)) & LAYER_MASK;
+            if (label == 0) {
+                label = nextLabel++;
+                map |= label << (color * BITS_PER_LAYER);
+            }
+            pattern |= label << (layer * BITS_PER_LAYER);
+        }
+        return pattern;
+    }
+
+    private static int comparePattern(long bottle, long otherPattern, long other) {
+        int byPattern = Long.compare(pattern(bottle), otherPattern);
+        return byPattern != 0 ? byPattern : Long.compare(bottle, other);
+    }
+
+    // Bottle i rendered bottom layer first with empty slots as 'e', e.g. [b, r, e, e]
+    public String bottleToString(int i) {
+        StringBuilder builder = new StringBuilder("[");
+        for (int layer = 0; layer < capacity; layer++) {
+            if (layer > 0) {
+                builder.append(", ");
+            }
+            builder.append(colorChar((int) ((bottles[i] >>> (layer * BITS_PER_LAYER)) & LAYER_MASK)));
+        }
+        return builder.append(']').toString();
+    }
+
+    // The state in the "n;capacity;bottle;..." format read by WaterSortSearch.initializeNode,
+    // each bottle listed top layer first with empty slots as 'e'
+    public String toGridString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(bottles.length).append(';').append(capacity).append(';');
+        for (long bottle : bottles) {
+            for (int layer = capacity - 1; layer >= 0; layer--) {
+                builder.append(colorChar((int) ((bottle >>> (layer * BITS_PER_LAYER)) & LAYER_MASK)));
+                builder.append(layer > 0 ? ',' : ';');
+            }
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof PackedState)) {
+            return false;
+        }
+        PackedState state = (PackedState) other;
+        return capacity == state.capacity && Arrays.equals(bottles, state.bottles);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bottles);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < bottles.length; i++) {
+            builder.append(bottleToString(i)).append(';');
+        }
+        return builder.toString();
+    }
+}
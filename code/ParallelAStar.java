@@ -0,0 +1,313 @@
+package code;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Hash-distributed A* (HDA*). Every state has an owner worker chosen by its
+// hash; each worker keeps its own open list and closed set (state -> best path
+// cost) and expands only the states it owns. Successors of other owners are
+// batched per destination and handed over through lock-free mailboxes.
+//
+// Goals are tested when a node is expanded and become the incumbent if they
+// are cheaper than the current one; nodes with f >= the incumbent's cost are
+// not expanded. A state reached again with a lower path cost is reopened, so
+// with an admissible heuristic the result is as good as serial A* with
+// reopening. The search ends when every worker is idle (no open node below
+// the bound) and no message is in flight. Interrupting the calling thread
+// stops the workers like a cancelled budget; search joins them and returns a
+// cancelled result with the interrupt still set.
+public class ParallelAStar {
+    private static final long IDLE_PARK_NANOS = 50_000;
+
+    private final Node root;
+    private final String strategy;
+    private final SearchOptions options;
+    private final int threads;
+    private final Worker[] workers;
+
+    private volatile Node incumbent; // Cheapest goal found so far
+    private volatile int bound = Integer.MAX_VALUE; // Path cost of the incumbent
+    private final AtomicLong inFlight = new AtomicLong(); // Nodes sent but not yet received
+    private final AtomicInteger idleWorkers = new AtomicInteger();
+    private final AtomicLong activations = new AtomicLong(); // Idle to active transitions, for termination
+    private volatile boolean done;
+    private volatile Throwable failure;
+    private final SearchBudget budget;
+    private volatile SearchBudget.Limit exhaustedBy; // The limit that stopped the workers, null if none did
+
+    public ParallelAStar(Node root, String strategy, SearchOptions options) {
+        if (!strategy.equals("AS1") && !strategy.equals("AS2") && !strategy.equals("AS3")) {
+            throw new IllegalArgumentException("Invalid search strategy: " + strategy);
+        }
+        this.root = root;
+        this.strategy = strategy;
+        this.options = options;
+        this.threads = options.parallelism;
+        this.budget = new SearchBudget(options);
+        this.workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(i);
+        }
+    }
+
+    // Counters are summed over the workers, so the peaks are upper bounds
+    public SearchResult search() {
+        Worker owner = workers[ownerOf(options.keyOf(root.state, new long[root.state.size()]))];
+        ArrayList<Node> first = new ArrayList<>();
+        first.add(root);
+        inFlight.incrementAndGet();
+        owner.mailbox.add(first);
+
+        Thread[] running = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            running[i] = new Thread(workers[i], "hda-worker-" + i);
+            running[i].start();
+        }
+        boolean interrupted = false;
+        for (Thread thread : running) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    if (!done) {
+                        exhaustedBy = SearchBudget.Limit.CANCELLED;
+                        done = true;
+                    }
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Worker failed", failure);
+        }
+
+        long generated = 0;
+        long duplicates = 0;
+        long peakOpen = 0;
+        long closedStates = 0;
+        for (Worker worker : workers) {
+            generated += worker.generated;
+            duplicates += worker.duplicates;
+            peakOpen += worker.peakOpen;
+            closedStates += worker.closed.size();
+        }
+        Node goal = incumbent;
+        if (exhaustedBy != null) {
+            // The incumbent, if any, is the partial plan: it was not proven optimal
+            SearchResult result = SearchResult.noSolution(getExpandedNodes(), generated, duplicates, peakOpen, closedStates);
+            result.setExhausted(exhaustedBy, goal == null ? null : GenericSearch.movesOf(goal));
+            return result;
+        }
+        if (goal == null) {
+            return SearchResult.noSolution(getExpandedNodes(), generated, duplicates, peakOpen, closedStates);
+        }
+        return new SearchResult(GenericSearch.movesOf(goal), goal.pathCost, getExpandedNodes(), generated, duplicates,
+                peakOpen, closedStates);
+    }
+
+    public int getExpandedNodes() {
+        int expanded = 0;
+        for (Worker worker : workers) {
+            expanded += worker.expanded;
+        }
+        return expanded;
+    }
+
+    // Workers check the budget every few expansions against counters summed over
+    // all workers; the other workers' counts may be slightly stale
+    private void checkBudget() {
+        long expanded = 0;
+        long closedStates = 0;
+        for (Worker worker : workers) {
+            expanded += worker.expanded;
+            closedStates += worker.closed.size();
+        }
+        SearchBudget.Limit limit = budget.check(expanded, closedStates);
+        if (limit != null) {
+            exhaustedBy = limit;
+            done = true;
+        }
+    }
+
+    // Spread owners with a multiplicative hash so they do not share low bits
+    // with the slot index each worker's StateSet derives from the same hash
+    private int ownerOf(long[] key) {
+        long mixed = (StateSet.hash(key) * 0x9E3779B9L) & 0xFFFFFFFFL;
+        return (int) ((mixed * threads) >>> 32);
+    }
+
+    private synchronized void offerSolution(Node goal) {
+        if (goal.pathCost < bound) {
+            incumbent = goal;
+            bound = goal.pathCost;
+        }
+    }
+
+    // All workers idle with nothing in flight, and nobody woke up while we looked
+    private void checkTermination() {
+        long before = activations.get();
+        if (idleWorkers.get() == threads && inFlight.get() == 0 && activations.get() == before) {
+            done = true;
+        }
+    }
+
+    private final class Worker implements Runnable {
+        final int id;
+        final ConcurrentLinkedQueue<ArrayList<Node>> mailbox = new ConcurrentLinkedQueue<>();
+        final BucketQueue open;
+        final StateSet closed; // Best path cost per owned state
+        final ArrayList<ArrayList<Node>> outgoing = new ArrayList<>(); // Batch per destination worker
+        final long[] scratch;
+        final PatternDatabase patternDatabase; // Own instance, since lookups use scratch space
+        boolean idle;
+        int expanded;
+        long generated; // Legal pours
+        long duplicates; // Successors not cheaper than their state's best path cost
+        int peakOpen;
+
+        Worker(int id) {
+            this.id = id;
+            BucketQueue.TieBreak tieBreak = options.tieBreak != null
+                    ? options.tieBreak : BucketQueue.defaultTieBreak(strategy);
+            this.open = new BucketQueue(strategy, tieBreak);
+            this.closed = new StateSet(root.state.size(), StateSet.DEFAULT_CAPACITY, StateSet.DEFAULT_LOAD_FACTOR, true);
+            this.scratch = new long[root.state.size()];
+            this.patternDatabase = strategy.equals("AS3") ? PatternDatabase.forPuzzle(root.state, options.patternDirectory) : null;
+            for (int i = 0; i < threads; i++) {
+                outgoing.add(new ArrayList<>());
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!done) {
+                    drainMailbox();
+                    Node node = nextNode();
+                    if (node != null) {
+                        if ((expanded & 63) == 0) {
+                            checkBudget();
+                            if (done) {
+                                break;
+                            }
+                        }
+                        expand(node);
+                        peakOpen = Math.max(peakOpen, open.size());
+                        flush();
+                        continue;
+                    }
+                    if (!idle) {
+                        idle = true;
+                        idleWorkers.incrementAndGet();
+                    }
+                    checkTermination();
+                    if (mailbox.isEmpty() && !done) {
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    }
+                }
+            } catch (Throwable t) {
+                failure = t;
+                done = true;
+            }
+        }
+
+        private void drainMailbox() {
+            ArrayList<Node> batch;
+            while ((batch = mailbox.poll()) != null) {
+                if (idle) {
+                    activations.incrementAndGet(); // Before leaving the idle count
+                    idle = false;
+                    idleWorkers.decrementAndGet();
+                }
+                for (Node node : batch) {
+                    receive(node);
+                }
+                inFlight.addAndGet(-batch.size());
+            }
+        }
+
+        // Keep a node only if it reaches its state more cheaply than before
+        private void receive(Node node) {
+            if (!closed.addOrLower(options.keyOf(node.state, scratch), node.pathCost)) {
+                duplicates++;
+                return;
+            }
+            if (patternDatabase != null) {
+                node.heuristicValue = node.calculateH3(patternDatabase);
+            } else {
+                node.calculateHeuristics(strategy);
+            }
+            if (node.pathCost + node.heuristicValue < bound) {
+                open.add(node);
+            }
+        }
+
+        // Cheapest open node below the bound whose path cost is still the best known
+        private Node nextNode() {
+            while (!open.isEmpty()) {
+                Node node = open.peek();
+                if (node.pathCost + node.heuristicValue >= bound) {
+                    return null;
+                }
+                open.poll();
+                if (closed.valueOf(options.keyOf(node.state, scratch)) == node.pathCost) {
+                    return node;
+                }
+            }
+            return null;
+        }
+
+        private void expand(Node node) {
+            expanded++;
+            if (node.isGoal()) {
+                offerSolution(node);
+                return;
+            }
+            PackedState working = node.state.copy();
+            int size = working.size();
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    if (options.movePruning != null && working.canPour(i, j)
+                            && options.movePruning.prune(working, i, j, node.move, node.moveAmount, false)) {
+                        continue;
+                    }
+                    int cost = working.pour(i, j);
+                    if (cost == 0) {
+                        continue;
+                    }
+                    generated++;
+                    long[] key = options.keyOf(working, scratch);
+                    int owner = ownerOf(key);
+                    if (owner != id) {
+                        outgoing.get(owner).add(node.createChild(working.copy(), i, j, cost));
+                    } else {
+                        int known = closed.valueOf(key);
+                        if (known < 0 || known > node.pathCost + cost) {
+                            receive(node.createChild(working.copy(), i, j, cost)); // Only allocate improving local children
+                        } else {
+                            duplicates++;
+                        }
+                    }
+                    working.unpour(i, j, cost);
+                }
+            }
+        }
+
+        private void flush() {
+            for (int owner = 0; owner < threads; owner++) {
+                ArrayList<Node> batch = outgoing.get(owner);
+                if (!batch.isEmpty()) {
+                    inFlight.addAndGet(batch.size()); // Counted before the receiver can see it
+                    workers[owner].mailbox.add(batch);
+                    outgoing.set(owner, new ArrayList<>());
+                }
+            }
+        }
+    }
+}
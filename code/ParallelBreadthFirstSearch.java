@@ -0,0 +1,210 @@
+package code;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Level-synchronous breadth-first search. Each depth layer is expanded in
+// parallel on a ForkJoinPool; children already generated in earlier layers are
+// dropped against the shared seen set, and duplicates inside the layer are
+// resolved in favour of the child the serial queue would have generated first.
+// The next layer therefore has exactly the serial order, so the plan, path cost
+// and expansion count match breadthFirstSearch.
+//
+// The budget is checked before every parent is expanded, so a limit that runs
+// out inside a layer stops it there; the layer is then reported as cut short,
+// with the parents expanded so far counted. The layer tasks run on the pool,
+// so an interrupt of the calling thread is passed to them through a flag that
+// is checked the same way, and the pool is shut down and its threads waited
+// for before search returns with the interrupt still set.
+public class ParallelBreadthFirstSearch {
+    private final Node root;
+    private final SearchOptions options;
+    private final int width;
+    private final LongAdder generated = new LongAdder(); // Legal pours over all layers
+    private volatile boolean cancelled; // The calling thread was interrupted
+    private volatile SearchBudget.Limit stopped; // Limit that ran out inside the current layer, null if none
+    private final AtomicInteger layerExpanded = new AtomicInteger(); // Parents of the current layer expanded so far
+    private SearchBudget budget;
+    private int expandedBefore; // Parents expanded in earlier layers
+    private int seenBefore; // Seen states when the current layer started
+
+    public ParallelBreadthFirstSearch(Node root, SearchOptions options) {
+        this.root = root;
+        this.options = options;
+        this.width = root.state.size();
+    }
+
+    // Run the search. Generated and duplicate counts cover the fully expanded
+    // layers, so they stop short of the serial counts in the goal's layer
+    public SearchResult search() {
+        budget = new SearchBudget(options);
+        ForkJoinPool pool = new ForkJoinPool(options.parallelism);
+        boolean interrupted = false;
+        try {
+            Future<SearchResult> task = pool.submit(this::searchLayers);
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    cancelled = true; // Wait for the task to report the cancelled search
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Parallel BFS failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+            while (true) {
+                try {
+                    pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private SearchResult searchLayers() {
+        StateSet seen = new StateSet(width); // Like the serial search, the root itself is not marked
+        List<Node> layer = new ArrayList<>();
+        layer.add(root);
+        int expandedNodes = 0;
+        long peakLayer = 1;
+
+        while (!layer.isEmpty()) {
+            List<Node> current = layer;
+
+            // The serial queue tests nodes for the goal in layer order
+            OptionalInt goal = IntStream.range(0, current.size()).parallel()
+                    .filter(k -> current.get(k).isGoal())
+                    .findFirst();
+            if (goal.isPresent()) {
+                Node goalNode = current.get(goal.getAsInt());
+                expandedNodes += goal.getAsInt();
+                return result(goalNode, expandedNodes, peakLayer, seen.size());
+            }
+            // Checked again between layers, where the seen set has grown
+            SearchBudget.Limit limit = cancelled ? SearchBudget.Limit.CANCELLED : budget.check(expandedNodes, seen.size());
+            if (limit != null) {
+                return exhausted(limit, current, expandedNodes, peakLayer, seen.size());
+            }
+
+            // Children not seen in earlier layers, in serial generation order
+            expandedBefore = expandedNodes;
+            seenBefore = seen.size();
+            layerExpanded.set(0);
+            List<Candidate> candidates = current.parallelStream()
+                    .flatMap(parent -> expand(parent, seen).stream())
+                    .collect(Collectors.toList());
+            if (cancelled || stopped != null) {
+                // Layer cut short: its children are dropped, its expansions still count
+                limit = cancelled ? SearchBudget.Limit.CANCELLED : stopped;
+                return exhausted(limit, current, expandedNodes + layerExpanded.get(), peakLayer, seen.size());
+            }
+            expandedNodes += current.size();
+
+            // Keep the first occurrence of every state within the layer
+            ConcurrentHashMap<PackedState, Integer> first = new ConcurrentHashMap<>();
+            IntStream.range(0, candidates.size()).parallel()
+                    .forEach(k -> first.merge(candidates.get(k).key, k, Math::min));
+            List<Candidate> accepted = IntStream.range(0, candidates.size()).parallel()
+                    .filter(k -> first.get(candidates.get(k).key) == k)
+                    .mapToObj(candidates::get)
+                    .collect(Collectors.toList());
+
+            layer = new ArrayList<>(accepted.size());
+            for (Candidate candidate : accepted) {
+                seen.add(candidate.key);
+                layer.add(candidate.node);
+            }
+            peakLayer = Math.max(peakLayer, layer.size());
+        }
+        return result(null, expandedNodes, peakLayer, seen.size());
+    }
+
+    // Result of a search stopped before expanding the layer, with the partial
+    // plan to its node with the fewest out-of-place layers
+    private SearchResult exhausted(SearchBudget.Limit limit, List<Node> layer, int expandedNodes, long peakLayer,
+                                   int seenSize) {
+        SearchResult result = result(null, expandedNodes, peakLayer, seenSize);
+        Node closest = layer.stream().min(Comparator.comparingInt(node -> node.state.h2())).get();
+        result.setExhausted(limit, GenericSearch.movesOf(closest));
+        return result;
+    }
+
+    // Every legal pour either joins a later layer, which all end up in seen, or
+    // is a duplicate
+    private SearchResult result(Node goal, int expandedNodes, long peakLayer, int seenSize) {
+        long generatedNodes = generated.sum();
+        long duplicates = generatedNodes - seenSize;
+        if (goal == null) {
+            return SearchResult.noSolution(expandedNodes, generatedNodes, duplicates, peakLayer, seenSize);
+        }
+        return new SearchResult(GenericSearch.movesOf(goal), goal.pathCost, expandedNodes, generatedNodes, duplicates, peakLayer, seenSize);
+    }
+
+    // Children of one parent whose states were not generated in earlier layers;
+    // the seen set is only read while a layer is being expanded
+    private List<Candidate> expand(Node parent, StateSet seen) {
+        if (cancelled || stopped != null) {
+            return Collections.emptyList(); // The layer is discarded anyway
+        }
+        // Every parent takes its own expansion number, so an expansion cap is met exactly
+        int expansion = layerExpanded.getAndIncrement();
+        SearchBudget.Limit limit = budget.check(expandedBefore + expansion, seenBefore);
+        if (limit != null) {
+            layerExpanded.decrementAndGet();
+            stopped = limit;
+            return Collections.emptyList();
+        }
+        List<Candidate> children = new ArrayList<>();
+        PackedState working = parent.state.copy();
+        long[] scratch = new long[width];
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < width; j++) {
+                if (options.movePruning != null && working.canPour(i, j)
+                        && options.movePruning.prune(working, i, j, parent.move, parent.moveAmount, false)) {
+                    continue;
+                }
+                int cost = working.pour(i, j);
+                if (cost == 0) {
+                    continue;
+                }
+                generated.increment();
+                long[] key = options.keyOf(working, scratch);
+                if (!seen.contains(key)) {
+                    Node child = parent.createChild(working.copy(), i, j, cost);
+                    PackedState childKey = options.usesSymmetry() ? new PackedState(key.clone(), working.capacity) : child.state;
+                    children.add(new Candidate(child, childKey));
+                }
+                working.unpour(i, j, cost);
+            }
+        }
+        return children;
+    }
+
+    private static final class Candidate {
+        final Node node;
+        final PackedState key; // State used for duplicate detection
+
+        Candidate(Node node, PackedState key) {
+            this.node = node;
+            this.key = key;
+        }
+    }
+}
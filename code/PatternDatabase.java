@@ -0,0 +1,327 @@
+package code;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Additive pattern-database heuristic (H3). For every color of the puzzle the
+// state is abstracted to "this color" and "any other color": a bottle becomes
+// its sequence of pattern and other layers, and bottle order is dropped. In the
+// abstraction a pour may move any number of layers of its top run, and only
+// pattern layers cost anything to move, so every real pour maps to an abstract
+// move costing exactly the pattern layers it moves. The exact abstract distance
+// to a goal (all pattern layers alone in one bottle) is a lower bound on the
+// cost of moving that color, and since every pour moves a single color the sum
+// over colors is an admissible estimate of the path cost.
+//
+// Distances are computed once per (bottles, capacity, pattern layers, other
+// layers) by a retrograde Dijkstra search from the abstract goals, written to a
+// file of sorted keys and distances, and memory-mapped when a search starts.
+// Abstract states that cannot reach a goal are dead ends for the real puzzle
+// as well and get one more than the largest stored distance.
+public class PatternDatabase {
+    private static final int MAGIC = 0x57535044; // "WSPD"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final ConcurrentHashMap<Path, Table> TABLES = new ConcurrentHashMap<>(); // Mapped tables by file
+
+    private final int capacity;
+    private final int[] colors; // Color codes present in the puzzle
+    private final Table[] tables; // Table for each color, by its layer count
+    private final int[] codes; // Scratch abstract bottles, one lookup at a time
+
+    private PatternDatabase(int capacity, int[] colors, Table[] tables, int bottleCount) {
+        this.capacity = capacity;
+        this.colors = colors;
+        this.tables = tables;
+        this.codes = new int[bottleCount];
+    }
+
+    // Database for puzzles with the same bottle count, capacity and color counts
+    // as state; tables missing from the directory are built and saved there
+    public static PatternDatabase forPuzzle(PackedState state, Path directory) {
+        int bottleCount = state.size();
+        int capacity = state.capacity;
+        if ((long) bottleCount * (capacity + 1) > 63) {
+            throw new IllegalArgumentException("Pattern database needs bottles * (capacity + 1) <= 63, got "
+                    + bottleCount + " bottles of capacity " + capacity);
+        }
+        int[] layers = new int[PackedState.COLORS.length() + 1];
+        int total = 0;
+        for (int i = 0; i < bottleCount; i++) {
+            long bottle = state.bottles[i];
+            for (int layer = 0; layer < PackedState.count(bottle); layer++) {
+                layers[(int) ((bottle >>> (layer * PackedState.BITS_PER_LAYER)) & PackedState.LAYER_MASK)]++;
+                total++;
+            }
+        }
+        int present = 0;
+        for (int color = 1; color < layers.length; color++) {
+            if (layers[color] > 0) {
+                present++;
+            }
+        }
+        int[] colors = new int[present];
+        Table[] tables = new Table[present];
+        int next = 0;
+        for (int color = 1; color < layers.length; color++) {
+            if (layers[color] > 0) {
+                colors[next] = color;
+                tables[next] = table(directory, bottleCount, capacity, layers[color], total - layers[color]);
+                next++;
+            }
+        }
+        return new PatternDatabase(capacity, colors, tables, bottleCount);
+    }
+
+    private static Table table(Path directory, int bottleCount, int capacity, int pattern, int other) {
+        Path file = directory.resolve("pdb-" + bottleCount + "-" + capacity + "-" + pattern + "-" + other + ".bin");
+        return TABLES.computeIfAbsent(file.toAbsolutePath(), path -> {
+            try {
+                if (!Files.exists(path)) {
+                    Files.createDirectories(directory);
+                    new Builder(bottleCount, capacity, pattern, other).write(path);
+                }
+                return new Table(path, bottleCount, capacity, pattern, other);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot load pattern database " + path, e);
+            }
+        });
+    }
+
+    // Heuristic 3: sum over colors of the abstract distance to sort that color.
+    // Not thread-safe; every search uses its own instance
+    public int h3(PackedState state) {
+        int estimate = 0;
+        for (int k = 0; k < colors.length; k++) {
+            estimate += tables[k].distance(key(state, colors[k]));
+        }
+        return estimate;
+    }
+
+    // Abstract key of the state for one color: each bottle as a marker bit above
+    // its layers, with bit l set if layer l has the pattern color, and the codes
+    // sorted and packed capacity + 1 bits apart
+    private long key(PackedState state, int color) {
+        for (int i = 0; i < codes.length; i++) {
+            long bottle = state.bottles[i];
+            int count = PackedState.count(bottle);
+            int code = 1 << count;
+            for (int layer = 0; layer < count; layer++) {
+                if (((bottle >>> (layer * PackedState.BITS_PER_LAYER)) & PackedState.LAYER_MASK) == color) {
+                    code |= 1 << layer;
+                }
+            }
+            codes[i] = code;
+        }
+        return pack(codes, capacity);
+    }
+
+    private static long pack(int[] codes, int capacity) {
+        Arrays.sort(codes);
+        long key = 0;
+        for (int i = 0; i < codes.length; i++) {
+            key |= (long) codes[i] << (i * (capacity + 1));
+        }
+        return key;
+    }
+
+    // Memory-mapped table of sorted abstract keys and their distances
+    private static final class Table {
+        private final LongBuffer keys;
+        private final ByteBuffer distances;
+        private final int count;
+        private final int deadEnd; // Estimate for keys absent from the table
+
+        Table(Path file, int bottleCount, int capacity, int pattern, int other) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION || mapped.getInt(8) != bottleCount
+                        || mapped.getInt(12) != capacity || mapped.getInt(16) != pattern || mapped.getInt(20) != other) {
+                    throw new IOException("Pattern database " + file + " does not match the puzzle");
+                }
+                this.count = mapped.getInt(24);
+                this.deadEnd = mapped.getInt(28) + 1;
+                this.keys = mapped.slice(HEADER_BYTES, count * Long.BYTES).asLongBuffer();
+                this.distances = mapped.slice(HEADER_BYTES + count * Long.BYTES, count);
+            }
+        }
+
+        int distance(long key) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long probe = keys.get(mid);
+                if (probe < key) {
+                    low = mid + 1;
+                } else if (probe > key) {
+                    high = mid - 1;
+                } else {
+                    return distances.get(mid) & 0xFF;
+                }
+            }
+            return deadEnd;
+        }
+    }
+
+    // Retrograde Dijkstra over the abstract space, with buckets by distance
+    private static final class Builder {
+        private final int bottleCount;
+        private final int capacity;
+        private final int pattern;
+        private final int other;
+        private final long codeMask;
+        private final StateSet distance = new StateSet(1, StateSet.DEFAULT_CAPACITY, StateSet.DEFAULT_LOAD_FACTOR, true);
+        private final ArrayList<ArrayDeque<Long>> buckets = new ArrayList<>();
+        private long[] settled = new long[1024]; // Keys in the order their distance became final
+        private int settledCount;
+
+        Builder(int bottleCount, int capacity, int pattern, int other) {
+            this.bottleCount = bottleCount;
+            this.capacity = capacity;
+            this.pattern = pattern;
+            this.other = other;
+            this.codeMask = (1L << (capacity + 1)) - 1;
+        }
+
+        void write(Path file) throws IOException {
+            search();
+            long[] sorted = Arrays.copyOf(settled, settledCount);
+            Arrays.sort(sorted);
+            int maxDistance = 0;
+            ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + settledCount * (Long.BYTES + 1));
+            out.putInt(MAGIC).putInt(VERSION).putInt(bottleCount).putInt(capacity)
+                    .putInt(pattern).putInt(other).putInt(settledCount).putInt(0);
+            for (long key : sorted) {
+                out.putLong(key);
+            }
+            long[] probe = new long[1];
+            for (long key : sorted) {
+                probe[0] = key;
+                int d = distance.valueOf(probe);
+                if (d > 255) {
+                    throw new IllegalStateException("Pattern distance " + d + " does not fit in a byte");
+                }
+                maxDistance = Math.max(maxDistance, d);
+                out.put((byte) d);
+            }
+            out.putInt(28, maxDistance);
+            out.flip();
+
+            // Write to a temporary file first so concurrent builders never see a partial table
+            Path temporary = Files.createTempFile(file.getParent(), "pdb", ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private void search() {
+            if (pattern <= capacity) { // Otherwise the color can never fit in one bottle
+                addGoals(new int[bottleCount], 1, other, capacity);
+            }
+            int[] codes = new int[bottleCount];
+            long[] probe = new long[1];
+            for (int d = 0; d < buckets.size(); d++) {
+                ArrayDeque<Long> bucket = buckets.get(d);
+                while (!bucket.isEmpty()) {
+                    long key = bucket.poll();
+                    probe[0] = key;
+                    if (distance.valueOf(probe) != d) {
+                        continue; // Reached more cheaply since it was queued
+                    }
+                    if (settledCount == settled.length) {
+                        settled = Arrays.copyOf(settled, settledCount * 2);
+                    }
+                    settled[settledCount++] = key;
+                    predecessors(key, d, codes);
+                }
+                buckets.set(d, null);
+            }
+        }
+
+        // Goals: the pattern layers in one bottle, the other layers spread over the
+        // remaining bottles in non-increasing amounts
+        private void addGoals(int[] codes, int index, int remaining, int limit) {
+            if (index == bottleCount) {
+                if (remaining == 0) {
+                    codes[0] = (1 << pattern) | ((1 << pattern) - 1);
+                    relax(pack(codes.clone(), capacity), 0);
+                }
+                return;
+            }
+            for (int amount = Math.min(remaining, limit); amount >= 0; amount--) {
+                codes[index] = 1 << amount;
+                addGoals(codes, index + 1, remaining - amount, amount);
+            }
+        }
+
+        // Undo every abstract pour that could have produced the state: take k
+        // layers of the top run of bottle j back onto bottle i
+        private void predecessors(long key, int d, int[] codes) {
+            for (int j = 0; j < bottleCount; j++) {
+                int source = (int) ((key >>> (j * (capacity + 1))) & codeMask);
+                int sourceCount = 31 - Integer.numberOfLeadingZeros(source);
+                if (sourceCount == 0) {
+                    continue;
+                }
+                int layers = source & ((1 << sourceCount) - 1);
+                int color = (layers >>> (sourceCount - 1)) & 1;
+                int run = 1;
+                while (run < sourceCount && ((layers >>> (sourceCount - 1 - run)) & 1) == color) {
+                    run++;
+                }
+                for (int k = 1; k <= run; k++) {
+                    if (k == run && k < sourceCount) {
+                        continue; // The pour's target would have had a different top color
+                    }
+                    int left = sourceCount - k;
+                    int shortened = (1 << left) | (layers & ((1 << left) - 1));
+                    for (int i = 0; i < bottleCount; i++) {
+                        if (i == j) {
+                            continue;
+                        }
+                        int target = (int) ((key >>> (i * (capacity + 1))) & codeMask);
+                        int targetCount = 31 - Integer.numberOfLeadingZeros(target);
+                        if (targetCount + k > capacity) {
+                            continue;
+                        }
+                        int targetLayers = target & ((1 << targetCount) - 1);
+                        if (color == 1) {
+                            targetLayers |= ((1 << k) - 1) << targetCount;
+                        }
+                        for (int b = 0; b < bottleCount; b++) {
+                            codes[b] = (int) ((key >>> (b * (capacity + 1))) & codeMask);
+                        }
+                        codes[j] = shortened;
+                        codes[i] = (1 << (targetCount + k)) | targetLayers;
+                        relax(pack(codes, capacity), d + (color == 1 ? k : 0));
+                    }
+                }
+            }
+        }
+
+        private void relax(long key, int d) {
+            if (!distance.addOrLower(new long[] {key}, d)) {
+                return;
+            }
+            while (buckets.size() <= d) {
+                buckets.add(new ArrayDeque<>());
+            }
+            buckets.get(d).add(key);
+        }
+    }
+}
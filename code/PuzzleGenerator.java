@@ -0,0 +1,181 @@
+package code;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+// Deterministic generator of solvable puzzles. A board starts sorted: the
+// colors are laid out in order over the non-empty bottles (as evenly filled as
+// possible) and the empty bottles come last. It is then scrambled by swapping
+// random pairs of layers scrambleDepth times, so small depths give nearly
+// sorted boards and large depths fully random ones. A board is only returned
+// once a depth-first search has found a solution for it within the
+// verification budget; otherwise the next random board is tried.
+public class PuzzleGenerator {
+    static final int DEFAULT_VERIFY_LIMIT = 200_000; // States the solvability check may visit
+    private static final int ATTEMPTS_PER_PUZZLE = 1000;
+
+    private final Random random;
+    private final int bottleCount;
+    private final int capacity;
+    private final int colorCount;
+    private final int emptyBottles;
+    private final int scrambleDepth;
+    private final int verifyLimit;
+
+    public PuzzleGenerator(long seed, int bottleCount, int capacity, int colorCount, int emptyBottles, int scrambleDepth) {
+        this(seed, bottleCount, capacity, colorCount, emptyBottles, scrambleDepth, DEFAULT_VERIFY_LIMIT);
+    }
+
+    public PuzzleGenerator(long seed, int bottleCount, int capacity, int colorCount, int emptyBottles,
+                           int scrambleDepth, int verifyLimit) {
+        if (colorCount < 1 || colorCount > PackedState.COLORS.length()) {
+            throw new IllegalArgumentException("Color count must be between 1 and " + PackedState.COLORS.length());
+        }
+        if (capacity < 1 || capacity > PackedState.MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + PackedState.MAX_CAPACITY);
+        }
+        int filledBottles = bottleCount - emptyBottles;
+        if (emptyBottles < 0 || filledBottles < colorCount || filledBottles > colorCount * capacity) {
+            throw new IllegalArgumentException("Cannot spread " + colorCount + " colors of " + capacity
+                    + " layers over " + filledBottles + " non-empty bottles");
+        }
+        if (scrambleDepth < 0) {
+            throw new IllegalArgumentException("Scramble depth must not be negative");
+        }
+        if (verifyLimit < 1) {
+            throw new IllegalArgumentException("Verify limit must be positive");
+        }
+        this.random = new Random(seed);
+        this.bottleCount = bottleCount;
+        this.capacity = capacity;
+        this.colorCount = colorCount;
+        this.emptyBottles = emptyBottles;
+        this.scrambleDepth = scrambleDepth;
+        this.verifyLimit = verifyLimit;
+    }
+
+    // Next puzzle as a packed state
+    public PackedState nextState() {
+        for (int attempt = 0; attempt < ATTEMPTS_PER_PUZZLE; attempt++) {
+            PackedState state = new PackedState(scrambledBoard(), capacity);
+            if (!state.isGoal() && isSolvable(state)) {
+                return state;
+            }
+        }
+        throw new IllegalStateException("No solvable board found in " + ATTEMPTS_PER_PUZZLE + " attempts");
+    }
+
+    // Next puzzle in the "n;capacity;bottle;..." input format
+    public String next() {
+        return nextState().toGridString();
+    }
+
+    // Stream count puzzles to a file, one per line
+    public void writeCorpus(Path file, int count) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < count; i++) {
+                writer.write(next());
+                writer.newLine();
+            }
+        }
+    }
+
+    private long[] scrambledBoard() {
+        int filledBottles = bottleCount - emptyBottles;
+        int layers = colorCount * capacity;
+
+        // Fill levels of the non-empty bottles, and the colors in layout order
+        int[] level = new int[filledBottles];
+        for (int i = 0; i < filledBottles; i++) {
+            level[i] = layers / filledBottles + (i < layers % filledBottles ? 1 : 0);
+        }
+        int[] colors = new int[layers];
+        for (int k = 0; k < layers; k++) {
+            colors[k] = k / capacity + 1;
+        }
+
+        for (int swap = 0; swap < scrambleDepth; swap++) {
+            int a = random.nextInt(layers);
+            int b = random.nextInt(layers);
+            int color = colors[a];
+            colors[a] = colors[b];
+            colors[b] = color;
+        }
+
+        long[] bottles = new long[bottleCount];
+        int k = 0;
+        for (int i = 0; i < filledBottles; i++) {
+            for (int layer = 0; layer < level[i]; layer++) {
+                bottles[i] |= (long) colors[k++] << (layer * PackedState.BITS_PER_LAYER);
+            }
+        }
+        return bottles;
+    }
+
+    // Depth-first search on one working state with pour/undo; true once a goal
+    // is reached, false if the space is exhausted or the budget runs out
+    private boolean isSolvable(PackedState start) {
+        PackedState working = start.copy();
+        int size = working.size();
+        StateSet seen = new StateSet(size);
+        seen.add(working);
+
+        int[] path = new int[64]; // Applied moves as source * size + target
+        int[] amounts = new int[64];
+        int[] nextMove = new int[64]; // Next move to try at each depth
+        int depth = 0;
+        while (depth >= 0) {
+            if (working.isGoal()) {
+                return true;
+            }
+            int move = nextMove[depth];
+            int amount = 0;
+            while (move < size * size && (amount = working.pour(move / size, move % size)) == 0) {
+                move++;
+            }
+            if (move == size * size) {
+                // All moves tried, backtrack
+                if (--depth >= 0) {
+                    working.unpour(path[depth] / size, path[depth] % size, amounts[depth]);
+                }
+                continue;
+            }
+            nextMove[depth] = move + 1;
+            if (!seen.add(working)) {
+                working.unpour(move / size, move % size, amount);
+                continue;
+            }
+            if (seen.size() > verifyLimit) {
+                return false;
+            }
+            if (depth + 1 == path.length) {
+                path = Arrays.copyOf(path, path.length * 2);
+                amounts = Arrays.copyOf(amounts, amounts.length * 2);
+                nextMove = Arrays.copyOf(nextMove, nextMove.length * 2);
+            }
+            path[depth] = move;
+            amounts[depth] = amount;
+            depth++;
+            nextMove[depth] = 0;
+        }
+        return false;
+    }
+
+    // Usage: PuzzleGenerator <file> <count> <seed> <bottles> <capacity> <colors> <emptyBottles> <scrambleDepth> [verifyLimit]
+    public static void main(String[] args) throws IOException {
+        if (args.length != 8 && args.length != 9) {
+            System.out.println("Usage: PuzzleGenerator <file> <count> <seed> <bottles> <capacity> <colors> <emptyBottles> <scrambleDepth> [verifyLimit]");
+            return;
+        }
+        int verifyLimit = args.length == 9 ? Integer.parseInt(args[8]) : DEFAULT_VERIFY_LIMIT;
+        PuzzleGenerator generator = new PuzzleGenerator(Long.parseLong(args[2]), Integer.parseInt(args[3]),
+                Integer.parseInt(args[4]), Integer.parseInt(args[5]), Integer.parseInt(args[6]), Integer.parseInt(args[7]),
+                verifyLimit);
+        generator.writeCorpus(Paths.get(args[0]), Integer.parseInt(args[1]));
+    }
+}
@@ -0,0 +1,44 @@
+package code;
+
+// Limits of one search, taken from its SearchOptions when the search starts.
+// Searches call check once per expansion with their expansion count and the
+// number of states they keep for duplicate detection; interrupting the
+// searching thread counts as cancellation
+public class SearchBudget {
+    // The limit that stopped a search
+    public enum Limit {
+        TIME,
+        EXPANSIONS,
+        CLOSED_STATES,
+        CANCELLED
+    }
+
+    private final long deadline; // System.nanoTime() value, Long.MAX_VALUE for none
+    private final long maxExpansions;
+    private final long maxClosedStates;
+    private final CancellationToken cancellation;
+
+    SearchBudget(SearchOptions options) {
+        this.deadline = options.timeLimitMillis > 0 ? System.nanoTime() + options.timeLimitMillis * 1_000_000 : Long.MAX_VALUE;
+        this.maxExpansions = options.maxExpansions > 0 ? options.maxExpansions : Long.MAX_VALUE;
+        this.maxClosedStates = options.maxClosedStates > 0 ? options.maxClosedStates : Long.MAX_VALUE;
+        this.cancellation = options.cancellation;
+    }
+
+    // The limit that has run out, or null to go on
+    Limit check(long expanded, long closedStates) {
+        if (expanded >= maxExpansions) {
+            return Limit.EXPANSIONS;
+        }
+        if (closedStates >= maxClosedStates) {
+            return Limit.CLOSED_STATES;
+        }
+        if ((cancellation != null && cancellation.isCancelled()) || Thread.currentThread().isInterrupted()) {
+            return Limit.CANCELLED;
+        }
+        if (deadline != Long.MAX_VALUE && System.nanoTime() >= deadline) {
+            return Limit.TIME;
+        }
+        return null;
+    }
+}
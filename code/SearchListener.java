@@ -0,0 +1,14 @@
+package code;
+
+// Receives the result of every search run with the options it is set on, e.g.
+// to export metrics. Called on the thread that ran the solve, after the search
+// and before solve returns. Solves answered by a solution cache only carry the
+// plan, cost and expanded count of the search that filled the entry
+public interface SearchListener {
+    void searchFinished(String initialState, String strategy, SearchResult result);
+
+    // Every plan an anytime strategy finds that improves on its previous one,
+    // while the search goes on
+    default void solutionFound(String strategy, SearchResult result) {
+    }
+}
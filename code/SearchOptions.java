@@ -0,0 +1,217 @@
+package code;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Optional settings for a search. The defaults reproduce the plain strategies.
+public class SearchOptions {
+    boolean sortBottles; // Treat states that differ only in bottle order as duplicates
+    boolean renameColors; // Treat states that differ only in which color letter is used as duplicates
+    boolean bucketQueue = true; // Use a BucketQueue instead of a PriorityQueue for UC, greedy and A*
+    BucketQueue.TieBreak tieBreak; // Order among nodes with equal keys, null for the strategy's default
+    boolean nodePool = true; // Keep UC, greedy and A* nodes in a NodePool instead of Node objects (bucket queue only)
+    boolean lazyHeuristic; // Evaluate greedy and A* heuristics when a node reaches the front of the queue
+    boolean lazySuccessors; // Let DF generate successors one at a time with a cursor per depth
+    int parallelism = 1; // Worker threads for the parallel strategies; 1 runs the serial search
+    int transpositionTable; // Entries of the transposition table for ID, IDA1 and IDA2; 0 for none
+    Path externalDirectory; // Directory for the layer files of disk-based BF, null to keep BF in memory
+    int externalPartitions = 16; // Hash partitions per layer for disk-based BF; only one is loaded at a time
+    double anytimeWeight = 3; // Heuristic weight of the first ARA1 and ARA2 iteration
+    double anytimeWeightStep = 0.5; // Weight decrease after each ARA1 and ARA2 iteration
+    long anytimeMillis; // Time after which ARA1 and ARA2 return their best plan, 0 to run until it is optimal
+    int beamWidth = 256; // Nodes kept per layer by BS1, BS2 and BS3
+    int beamWindow = 1 << 16; // Entries of the duplicate table of BS1, BS2 and BS3; 0 for none
+    long timeLimitMillis; // Wall-clock budget of a search, 0 for none
+    long maxExpansions; // Expansions after which a search stops, 0 for none
+    long maxClosedStates; // States kept for duplicate detection after which a search stops, 0 for none
+    CancellationToken cancellation; // Lets another thread stop the search, null for none
+    long bitstateBytes; // Bit array of the bitstate seen-set of DF and greedy, 0 for exact duplicate detection
+    int bitstateHashes = 3; // Bits set per state in that array
+    long offHeapStates; // States the off-heap duplicate tables are sized for, 0 to keep them on the heap
+    MovePruning movePruning; // Rules for skipping useless pours, null to generate every pour
+    SearchListener listener; // Told about every finished solve, null for none
+    SolutionCache solutionCache; // Results of earlier solves, null to always search
+    Path patternDirectory = Paths.get(System.getProperty("java.io.tmpdir"), "water-sort-pdb"); // Pattern database files for GR3 and AS3
+
+    public SearchOptions setSortBottles(boolean sortBottles) {
+        this.sortBottles = sortBottles;
+        return this;
+    }
+
+    public SearchOptions setRenameColors(boolean renameColors) {
+        this.renameColors = renameColors;
+        return this;
+    }
+
+    public SearchOptions setBucketQueue(boolean bucketQueue) {
+        this.bucketQueue = bucketQueue;
+        return this;
+    }
+
+    public SearchOptions setTieBreak(BucketQueue.TieBreak tieBreak) {
+        this.tieBreak = tieBreak;
+        return this;
+    }
+
+    public SearchOptions setNodePool(boolean nodePool) {
+        this.nodePool = nodePool;
+        return this;
+    }
+
+    public SearchOptions setLazyHeuristic(boolean lazyHeuristic) {
+        this.lazyHeuristic = lazyHeuristic;
+        return this;
+    }
+
+    public SearchOptions setLazySuccessors(boolean lazySuccessors) {
+        this.lazySuccessors = lazySuccessors;
+        return this;
+    }
+
+    public SearchOptions setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public SearchOptions setTranspositionTable(int entries) {
+        if (entries < 0) {
+            throw new IllegalArgumentException("Transposition table size must not be negative: " + entries);
+        }
+        this.transpositionTable = entries;
+        return this;
+    }
+
+    public SearchOptions setExternalMemory(Path directory) {
+        return setExternalMemory(directory, externalPartitions);
+    }
+
+    public SearchOptions setExternalMemory(Path directory, int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Partitions must be at least 1: " + partitions);
+        }
+        this.externalDirectory = directory;
+        this.externalPartitions = partitions;
+        return this;
+    }
+
+    public SearchOptions setPatternDirectory(Path directory) {
+        this.patternDirectory = directory;
+        return this;
+    }
+
+    public SearchOptions setAnytime(double initialWeight, double weightStep, long timeBudgetMillis) {
+        if (initialWeight < 1 || weightStep <= 0 || timeBudgetMillis < 0) {
+            throw new IllegalArgumentException("Anytime search needs weight >= 1, step > 0 and budget >= 0: "
+                    + initialWeight + ", " + weightStep + ", " + timeBudgetMillis);
+        }
+        this.anytimeWeight = initialWeight;
+        this.anytimeWeightStep = weightStep;
+        this.anytimeMillis = timeBudgetMillis;
+        return this;
+    }
+
+    public SearchOptions setBeam(int width, int dedupWindow) {
+        if (width < 1 || dedupWindow < 0 || dedupWindow > StateSet.MAX_CAPACITY) {
+            throw new IllegalArgumentException("Beam search needs width >= 1 and a window of 0 to "
+                    + StateSet.MAX_CAPACITY + " entries: " + width + ", " + dedupWindow);
+        }
+        this.beamWidth = width;
+        this.beamWindow = dedupWindow;
+        return this;
+    }
+
+    public SearchOptions setTimeLimit(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Time limit must not be negative: " + millis);
+        }
+        this.timeLimitMillis = millis;
+        return this;
+    }
+
+    public SearchOptions setMaxExpansions(long maxExpansions) {
+        if (maxExpansions < 0) {
+            throw new IllegalArgumentException("Expansion limit must not be negative: " + maxExpansions);
+        }
+        this.maxExpansions = maxExpansions;
+        return this;
+    }
+
+    public SearchOptions setMaxClosedStates(long maxClosedStates) {
+        if (maxClosedStates < 0) {
+            throw new IllegalArgumentException("Closed-state limit must not be negative: " + maxClosedStates);
+        }
+        this.maxClosedStates = maxClosedStates;
+        return this;
+    }
+
+    public SearchOptions setCancellation(CancellationToken cancellation) {
+        this.cancellation = cancellation;
+        return this;
+    }
+
+    public SearchOptions setBitstate(long bytes, int hashes) {
+        if (bytes < 0 || (bytes > 0 && bytes < 8) || bytes > (1L << 33) || hashes < 1 || hashes > 16) {
+            throw new IllegalArgumentException("Bitstate hashing needs 0 or 8 bytes to 8 GiB and 1 to 16 hashes: "
+                    + bytes + ", " + hashes);
+        }
+        this.bitstateBytes = bytes;
+        this.bitstateHashes = hashes;
+        return this;
+    }
+
+    public SearchOptions setOffHeapStates(long maxStates) {
+        if (maxStates < 0 || maxStates > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Off-heap states must be between 0 and " + Integer.MAX_VALUE + ": " + maxStates);
+        }
+        this.offHeapStates = maxStates;
+        return this;
+    }
+
+    public SearchOptions setMovePruning(MovePruning movePruning) {
+        this.movePruning = movePruning;
+        return this;
+    }
+
+    public SearchOptions setListener(SearchListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    public SearchOptions setSolutionCache(SolutionCache solutionCache) {
+        this.solutionCache = solutionCache;
+        return this;
+    }
+
+    // Settings that can change the plan or outcome a strategy returns, so the
+    // solution cache keeps their results apart. Settings that only change where
+    // states are stored (node pool, off-heap tables, external BF) are left out,
+    // as are budgets, whose exhausted results are never cached
+    String resultSettings() {
+        return "symmetry=" + sortBottles + "," + renameColors
+                + ";queue=" + bucketQueue + "," + tieBreak
+                + ";lazy=" + lazyHeuristic + "," + lazySuccessors
+                + ";threads=" + parallelism
+                + ";tt=" + transpositionTable
+                + ";anytime=" + anytimeWeight + "," + anytimeWeightStep + "," + anytimeMillis
+                + ";beam=" + beamWidth + "," + beamWindow
+                + ";bitstate=" + bitstateBytes + "," + bitstateHashes
+                + ";pruning=" + (movePruning == null ? "none" : movePruning.rules());
+    }
+
+    // Check if duplicate detection works on canonical states
+    public boolean usesSymmetry() {
+        return sortBottles || renameColors;
+    }
+
+    // Key used for duplicate detection: the packed bottles themselves, or their
+    // canonical form written into scratch when symmetry reduction is enabled
+    long[] keyOf(PackedState state, long[] scratch) {
+        if (!usesSymmetry()) {
+            return state.bottles;
+        }
+        state.canonicalize(scratch, sortBottles, renameColors);
+        return scratch;
+    }
+}
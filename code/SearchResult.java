@@ -0,0 +1,148 @@
+package code;
+import java.util.Arrays;
+
+// Outcome of one solve: the plan as encoded moves (see GenericSearch.encodeMove)
+// with its cost, and what the search did to find it. Counters a search cannot
+// observe stay 0. Wall time and allocated bytes cover the whole solve on the
+// calling thread; allocations of worker threads in parallel searches are not
+// included, and allocatedBytes is -1 if the JVM cannot measure it.
+// A search stopped by its budget reports the limit that ran out and, as its
+// partial plan, the moves to the expanded state with the fewest out-of-place
+// layers. toString gives the classic "plan;cost;expanded" or "NOSOLUTION"
+// form, or "BUDGETEXHAUSTED".
+public class SearchResult {
+    public enum Outcome {
+        SOLVED,
+        NO_SOLUTION, // The whole reachable space was searched
+        BUDGET_EXHAUSTED
+    }
+
+    private final int[] moves; // Null without a solution
+    private final int cost;
+    private final long expanded; // Nodes whose successors were generated
+    private final long generated; // Successors produced by legal pours
+    private final long duplicates; // Successors dropped by duplicate detection
+    private final long peakFrontier; // Most nodes waiting on the frontier at once
+    private final long peakClosed; // Most states held for duplicate detection at once
+    private SearchBudget.Limit exhaustedBy; // Null unless the budget ran out
+    private int[] partialMoves; // Best partial plan of an exhausted search, null if none was kept
+    private double suboptimalityBound = Double.NaN; // Cost is at most this times the optimum; NaN if not reported
+    private double omissionProbability = Double.NaN; // Chance bitstate hashing took a new state for a duplicate; NaN without it
+    private long wallNanos;
+    private long allocatedBytes = -1;
+
+    SearchResult(int[] moves, int cost, long expanded, long generated, long duplicates, long peakFrontier, long peakClosed) {
+        this.moves = moves;
+        this.cost = cost;
+        this.expanded = expanded;
+        this.generated = generated;
+        this.duplicates = duplicates;
+        this.peakFrontier = peakFrontier;
+        this.peakClosed = peakClosed;
+    }
+
+    static SearchResult noSolution(long expanded, long generated, long duplicates, long peakFrontier, long peakClosed) {
+        return new SearchResult(null, 0, expanded, generated, duplicates, peakFrontier, peakClosed);
+    }
+
+    void setExhausted(SearchBudget.Limit limit, int[] partialMoves) {
+        this.exhaustedBy = limit;
+        this.partialMoves = partialMoves;
+    }
+
+    void setSuboptimalityBound(double suboptimalityBound) {
+        this.suboptimalityBound = suboptimalityBound;
+    }
+
+    void setOmissionProbability(double omissionProbability) {
+        this.omissionProbability = omissionProbability;
+    }
+
+    void setResources(long wallNanos, long allocatedBytes) {
+        this.wallNanos = wallNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public boolean isSolved() {
+        return moves != null;
+    }
+
+    public Outcome getOutcome() {
+        if (moves != null) {
+            return Outcome.SOLVED;
+        }
+        return exhaustedBy != null ? Outcome.BUDGET_EXHAUSTED : Outcome.NO_SOLUTION;
+    }
+
+    // The limit that stopped the search, null unless the outcome is BUDGET_EXHAUSTED
+    public SearchBudget.Limit getExhaustedBy() {
+        return exhaustedBy;
+    }
+
+    // Operators towards the state closest to the goal when the budget ran out,
+    // null if the search kept none
+    public String getPartialPlan() {
+        return partialMoves == null ? null : GenericSearch.buildPlan(partialMoves, partialMoves.length);
+    }
+
+    // Encoded moves of the plan; empty if the puzzle starts solved, null without a solution
+    public int[] getMoves() {
+        return moves == null ? null : Arrays.copyOf(moves, moves.length);
+    }
+
+    // Operators of the plan, e.g. pour_0_3,pour_2_0
+    public String getPlan() {
+        return moves == null ? null : GenericSearch.buildPlan(moves, moves.length);
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    public long getExpanded() {
+        return expanded;
+    }
+
+    public long getGenerated() {
+        return generated;
+    }
+
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public long getPeakFrontier() {
+        return peakFrontier;
+    }
+
+    public long getPeakClosed() {
+        return peakClosed;
+    }
+
+    // Reported by ARA1 and ARA2, NaN for other strategies
+    public double getSuboptimalityBound() {
+        return suboptimalityBound;
+    }
+
+    // Reported by DF and greedy with bitstate hashing, NaN otherwise. A search
+    // that may have omitted states can miss plans, so NOSOLUTION is not a proof
+    public double getOmissionProbability() {
+        return omissionProbability;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        if (moves == null) {
+            return exhaustedBy != null ? "BUDGETEXHAUSTED" : "NOSOLUTION";
+        }
+        return getPlan() + ";" + cost + ";" + expanded;
+    }
+}
@@ -0,0 +1,337 @@
+package code;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Cache of solve results in front of WaterSortSearch.solve. Puzzles are keyed by
+// strategy, the search options that can change its result, capacity and their
+// canonical form (bottles sorted, colors renamed), so boards that differ only
+// in bottle order or color names share an entry.
+// Plans are kept on canonical bottle positions and translated back to the
+// caller's bottle indices on a hit. The cost is the same for every equivalent
+// board; the expanded count is the one of the search that filled the entry,
+// and the other counters of a hit are 0.
+// Bottles that tie on color pattern are ordered by raw value, so a few
+// equivalent boards get a different canonical form and are cached separately.
+//
+// At most maxEntries results are kept in memory, evicting the least recently
+// used. With a store file every new entry is also appended to it, and the file
+// is read back when the cache is created, keeping the newest maxEntries; a
+// truncated last record (e.g. after a crash) is dropped. Evicted and repeated
+// records stay in the file, so once it holds more than twice maxEntries records
+// it is rewritten with the kept entries through a temporary file that replaces
+// it atomically, which bounds both the file and the time to load it. Results cut short by a
+// budget are not cached, and neither is NOSOLUTION from a search that cannot
+// prove it (beam search, bitstate hashing), since other settings may solve it.
+public class SolutionCache implements AutoCloseable {
+    private static final int MAGIC = 0x57534353; // "WSCS"
+    private static final int VERSION = 2; // 2 added the option settings to the key
+    private static final int HEADER_BYTES = 8;
+    private static final int COMPACT_FACTOR = 2; // Rewrite the store once it holds this many times maxEntries records
+
+    private final LinkedHashMap<Key, Entry> entries;
+    private final int maxEntries;
+    private final Path store;
+    private DataOutputStream out; // Appends to the store, null without one
+    private long hits;
+    private long misses;
+
+    public SolutionCache(int maxEntries) {
+        this(maxEntries, null);
+    }
+
+    public SolutionCache(int maxEntries, Path store) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache needs at least one entry: " + maxEntries);
+        }
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.maxEntries = maxEntries;
+        this.store = store;
+        if (store != null) {
+            try {
+                open();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open solution store " + store, e);
+            }
+        }
+    }
+
+    // Cached result for the puzzle, or the result of a new search which is then
+    // cached. Concurrent misses on the same puzzle may both search
+    SearchResult solve(String initialState, String strategy, SearchOptions options) {
+        PackedState state = WaterSortSearch.initializeNode(initialState).state;
+        long[] canonical = new long[state.size()];
+        int[] order = state.canonicalOrder(canonical, true);
+        Key key = new Key(strategy, options.resultSettings(), state.capacity, canonical);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        if (entry != null) {
+            return entry.result(order);
+        }
+
+        SearchResult result = WaterSortSearch.search(initialState, strategy, false, options);
+        if (result.getOutcome() == SearchResult.Outcome.BUDGET_EXHAUSTED) {
+            return result; // Another budget may still solve it
+        }
+        if (!result.isSolved() && !provesNoSolution(strategy, result)) {
+            return result; // A wider beam or larger bit array may still solve it
+        }
+        entry = Entry.of(result, order);
+        synchronized (this) {
+            entries.put(key, entry);
+            if (out != null) {
+                try {
+                    write(out, key, entry);
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot write solution store " + store, e);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Beam search drops nodes and bitstate hashing may take new states for
+    // duplicates (it then reports an omission probability), so their failures
+    // are not proofs
+    private static boolean provesNoSolution(String strategy, SearchResult result) {
+        return !strategy.startsWith("BS") && Double.isNaN(result.getOmissionProbability());
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot close solution store " + store, e);
+            } finally {
+                out = null;
+            }
+        }
+    }
+
+    // Load the store, cut off a truncated last record or compact it, and reopen
+    // it for appends
+    private void open() throws IOException {
+        long valid = 0;
+        long records = 0;
+        if (Files.exists(store)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(store), 1 << 16))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Not a solution store: " + store);
+                }
+                int version = in.readInt();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported solution store version " + version + ": " + store);
+                }
+                valid = HEADER_BYTES;
+                while (true) {
+                    byte[] name = new byte[in.readUnsignedByte()];
+                    in.readFully(name);
+                    String settings = in.readUTF();
+                    int capacity = in.readInt();
+                    long[] bottles = new long[in.readInt()];
+                    for (int i = 0; i < bottles.length; i++) {
+                        bottles[i] = in.readLong();
+                    }
+                    int cost = in.readInt();
+                    long expanded = in.readLong();
+                    int length = in.readInt();
+                    int[] moves = length < 0 ? null : new int[length];
+                    for (int m = 0; m < length; m++) {
+                        moves[m] = in.readInt();
+                    }
+                    Key key = new Key(new String(name, StandardCharsets.US_ASCII), settings, capacity, bottles);
+                    Entry entry = new Entry(moves, cost, expanded);
+                    entries.put(key, entry);
+                    valid += recordBytes(key, entry);
+                    records++;
+                }
+            } catch (EOFException e) {
+                // End of the store, possibly inside a partly written record
+            }
+            if (valid < HEADER_BYTES) {
+                throw new IOException("Not a solution store: " + store);
+            }
+            if (records > (long) COMPACT_FACTOR * maxEntries) {
+                compact();
+            } else {
+                try (FileChannel channel = FileChannel.open(store, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                }
+            }
+            out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(store, StandardOpenOption.APPEND)));
+        } else {
+            Path parent = store.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(store)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.flush();
+        }
+    }
+
+    // Replace the store with the entries kept in memory, oldest first. The new
+    // file is written next to it and moved over it, so a crash leaves either
+    // the old or the new store
+    private void compact() throws IOException {
+        Path directory = store.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, store.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream tempOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                tempOut.writeInt(MAGIC);
+                tempOut.writeInt(VERSION);
+                for (Map.Entry<Key, Entry> entry : entries.entrySet()) {
+                    write(tempOut, entry.getKey(), entry.getValue());
+                }
+            }
+            Files.move(temp, store, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void write(DataOutputStream out, Key key, Entry entry) throws IOException {
+        byte[] name = key.strategy.getBytes(StandardCharsets.US_ASCII);
+        out.writeByte(name.length);
+        out.write(name);
+        out.writeUTF(key.settings);
+        out.writeInt(key.capacity);
+        out.writeInt(key.bottles.length);
+        for (long bottle : key.bottles) {
+            out.writeLong(bottle);
+        }
+        out.writeInt(entry.cost);
+        out.writeLong(entry.expanded);
+        if (entry.moves == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(entry.moves.length);
+            for (int move : entry.moves) {
+                out.writeInt(move);
+            }
+        }
+    }
+
+    private static long recordBytes(Key key, Entry entry) {
+        int moves = entry.moves == null ? 0 : entry.moves.length;
+        return 1 + key.strategy.length() + 2 + key.settings.length() + 4 + 4 + 8L * key.bottles.length + 4 + 8 + 4 + 4L * moves;
+    }
+
+    private static final class Key {
+        final String strategy;
+        final String settings; // SearchOptions.resultSettings, ASCII
+        final int capacity;
+        final long[] bottles; // Canonical bottles
+        final int hash;
+
+        Key(String strategy, String settings, int capacity, long[] bottles) {
+            this.strategy = strategy;
+            this.settings = settings;
+            this.capacity = capacity;
+            this.bottles = bottles;
+            this.hash = ((strategy.hashCode() * 31 + settings.hashCode()) * 31 + capacity) * 31
+                    + Arrays.hashCode(bottles);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return hash == key.hash && capacity == key.capacity && strategy.equals(key.strategy)
+                    && settings.equals(key.settings) && Arrays.equals(bottles, key.bottles);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // A result with its moves on canonical bottle positions; null moves for NOSOLUTION
+    private static final class Entry {
+        final int[] moves;
+        final int cost;
+        final long expanded;
+
+        Entry(int[] moves, int cost, long expanded) {
+            this.moves = moves;
+            this.cost = cost;
+            this.expanded = expanded;
+        }
+
+        // Entry for a result, where order maps canonical positions to the
+        // puzzle's bottle indices
+        static Entry of(SearchResult result, int[] order) {
+            if (!result.isSolved()) {
+                return new Entry(null, 0, result.getExpanded());
+            }
+            int[] position = new int[order.length];
+            for (int k = 0; k < order.length; k++) {
+                position[order[k]] = k;
+            }
+            int[] moves = result.getMoves();
+            for (int m = 0; m < moves.length; m++) {
+                moves[m] = GenericSearch.encodeMove(position[GenericSearch.moveSource(moves[m])],
+                        position[GenericSearch.moveTarget(moves[m])]);
+            }
+            return new Entry(moves, result.getCost(), result.getExpanded());
+        }
+
+        // The result on the bottle indices of a puzzle with the given order
+        SearchResult result(int[] order) {
+            if (moves == null) {
+                return SearchResult.noSolution(expanded, 0, 0, 0, 0);
+            }
+            int[] mapped = new int[moves.length];
+            for (int m = 0; m < moves.length; m++) {
+                mapped[m] = GenericSearch.encodeMove(order[GenericSearch.moveSource(moves[m])],
+                        order[GenericSearch.moveTarget(moves[m])]);
+            }
+            return new SearchResult(mapped, cost, expanded, 0, 0, 0, 0);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package code;
+import java.util.Arrays;
+
+// Open-addressing hash set of packed states. The bottles of every stored state
+// are copied into one flat long[] table (width longs per slot) next to an int[]
+// of cached hashes, so membership checks allocate nothing and no String keys or
+// boxed entries are kept. Collisions are resolved by linear probing.
+public class StateSet implements ValuedStateTable {
+    static final int DEFAULT_CAPACITY = 1 << 10;
+    static final float DEFAULT_LOAD_FACTOR = 0.7f;
+    static final int MAX_CAPACITY = 1 << 30;
+
+    private final int width; // Number of bottles per state
+    private final float loadFactor; // Table grows once size exceeds capacity * loadFactor
+    private long[] keys; // Slot k holds keys[k * width .. k * width + width - 1]
+    private int[] hashes; // Cached hash per slot, 0 marks a free slot
+    private int[] values; // Value per slot, null unless the set was created with values
+    private int mask;
+    private int size;
+    private int threshold;
+
+    public StateSet(int width) {
+        this(width, DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public StateSet(int width, int initialCapacity, float loadFactor) {
+        this(width, initialCapacity, loadFactor, false);
+    }
+
+    public StateSet(int width, int initialCapacity, float loadFactor, boolean withValues) {
+        if (width <= 0) {
+            throw new IllegalArgumentException("Invalid state width: " + width);
+        }
+        if (!(loadFactor > 0 && loadFactor < 1)) {
+            throw new IllegalArgumentException("Load factor must be in (0, 1): " + loadFactor);
+        }
+        this.width = width;
+        this.loadFactor = loadFactor;
+        this.values = withValues ? new int[0] : null;
+        allocate(tableSizeFor(Math.max(2, (int) Math.ceil(initialCapacity / loadFactor))));
+    }
+
+    private static int tableSizeFor(int capacity) {
+        if (capacity >= MAX_CAPACITY) {
+            return MAX_CAPACITY;
+        }
+        return Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    private void allocate(int capacity) {
+        if ((long) capacity * width > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("StateSet cannot hold " + capacity + " states of width " + width);
+        }
+        keys = new long[capacity * width];
+        hashes = new int[capacity];
+        if (values != null) {
+            values = new int[capacity];
+        }
+        mask = capacity - 1;
+        threshold = (int) (capacity * loadFactor);
+    }
+
+    // 32-bit hash of a packed state, never 0
+    static int hash(long[] bottles) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (long bottle : bottles) {
+            h = (h ^ bottle) * 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 31;
+        }
+        int hash = (int) (h ^ (h >>> 32));
+        return hash == 0 ? 1 : hash;
+    }
+
+    // Slot holding the state, or ~slot of the free slot where it would go
+    private int find(long[] bottles, int hash) {
+        int slot = hash & mask;
+        while (hashes[slot] != 0) {
+            if (hashes[slot] == hash && matches(slot, bottles)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    private boolean matches(int slot, long[] bottles) {
+        int base = slot * width;
+        for (int i = 0; i < width; i++) {
+            if (keys[base + i] != bottles[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean contains(PackedState state) {
+        return contains(state.bottles);
+    }
+
+    public boolean contains(long[] bottles) {
+        return find(bottles, hash(bottles)) >= 0;
+    }
+
+    public boolean add(PackedState state) {
+        return add(state.bottles);
+    }
+
+    // Add a copy of the state; returns false if it was already present
+    public boolean add(long[] bottles) {
+        int hash = hash(bottles);
+        int slot = find(bottles, hash);
+        if (slot >= 0) {
+            return false;
+        }
+        if (size >= threshold) {
+            grow();
+            slot = find(bottles, hash);
+        }
+        slot = ~slot;
+        hashes[slot] = hash;
+        System.arraycopy(bottles, 0, keys, slot * width, width);
+        size++;
+        return true;
+    }
+
+    // Value stored for the state, or -1 if it is absent
+    public int valueOf(long[] bottles) {
+        int slot = find(bottles, hash(bottles));
+        return slot >= 0 ? values[slot] : -1;
+    }
+
+    // Add the state with the given value, or lower the value of a present state;
+    // returns false if the state was present with a value no higher than this one
+    public boolean addOrLower(long[] bottles, int value) {
+        if (values == null) {
+            throw new IllegalStateException("StateSet was created without values");
+        }
+        int hash = hash(bottles);
+        int slot = find(bottles, hash);
+        if (slot >= 0) {
+            if (values[slot] <= value) {
+                return false;
+            }
+            values[slot] = value;
+            return true;
+        }
+        if (size >= threshold) {
+            grow();
+            slot = find(bottles, hash);
+        }
+        slot = ~slot;
+        hashes[slot] = hash;
+        values[slot] = value;
+        System.arraycopy(bottles, 0, keys, slot * width, width);
+        size++;
+        return true;
+    }
+
+    // Double the table and reinsert every state using its cached hash
+    private void grow() {
+        int capacity = hashes.length;
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("StateSet is full at " + size + " states");
+        }
+        long[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        int[] oldValues = values;
+        allocate(capacity * 2);
+        for (int oldSlot = 0; oldSlot < oldHashes.length; oldSlot++) {
+            int hash = oldHashes[oldSlot];
+            if (hash == 0) {
+                continue;
+            }
+            int slot = hash & mask;
+            while (hashes[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            hashes[slot] = hash;
+            if (values != null) {
+                values[slot] = oldValues[oldSlot];
+            }
+            System.arraycopy(oldKeys, oldSlot * width, keys, slot * width, width);
+        }
+    }
+
+    // Check if every state of the other set is also in this one
+    public boolean containsAll(StateSet other) {
+        long[] bottles = new long[other.width];
+        for (int slot = 0; slot < other.hashes.length; slot++) {
+            if (other.hashes[slot] == 0) {
+                continue;
+            }
+            System.arraycopy(other.keys, slot * other.width, bottles, 0, other.width);
+            if (find(bottles, other.hashes[slot]) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Remove every state but keep the allocated table
+    public void clear() {
+        Arrays.fill(hashes, 0);
+        size = 0;
+    }
+}
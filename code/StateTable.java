@@ -0,0 +1,16 @@
+package code;
+
+// Set of packed states for duplicate detection: exact on the heap (StateSet) or
+// off it (OffHeapStateSet), or approximate (BitStateSet). States are copied in,
+// so callers may reuse their arrays.
+public interface StateTable {
+    boolean contains(long[] bottles);
+
+    // Add a copy of the state; returns false if it was already present
+    boolean add(long[] bottles);
+
+    int size();
+
+    // Remove every state but keep the allocated table
+    void clear();
+}
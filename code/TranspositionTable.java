@@ -0,0 +1,65 @@
+package code;
+
+// Fixed-size, direct-mapped table of the states entered during one iteration of
+// an iterative-deepening search, each with the lowest path value (depth or path
+// cost) it was entered with. A state entered again with no lower value can be
+// skipped, since its subtree was already searched with at least as much budget
+// left. Colliding states overwrite each other, so memory does not grow with the
+// search; every iteration starts from an empty table without clearing it.
+public class TranspositionTable {
+    private final int width; // Number of bottles per state
+    private final long[] keys; // Slot k holds keys[k * width .. k * width + width - 1]
+    private final int[] values;
+    private final int[] iterations; // Iteration that wrote each slot, 0 for never
+    private final int mask;
+    private int iteration = 1;
+
+    public TranspositionTable(int width, int entries) {
+        if (width <= 0) {
+            throw new IllegalArgumentException("Invalid state width: " + width);
+        }
+        if (entries < 1 || entries > StateSet.MAX_CAPACITY) {
+            throw new IllegalArgumentException("Invalid number of entries: " + entries);
+        }
+        int capacity = Integer.highestOneBit(entries); // Rounded down so the table never exceeds the request
+        if ((long) capacity * width > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("TranspositionTable cannot hold " + capacity + " states of width " + width);
+        }
+        this.width = width;
+        this.keys = new long[capacity * width];
+        this.values = new int[capacity];
+        this.iterations = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    // Forget every entry before the next iteration
+    public void nextIteration() {
+        iteration++;
+    }
+
+    // Record the state with the given value; returns false if it was already
+    // entered in this iteration with a value no higher than this one
+    public boolean enter(long[] bottles, int value) {
+        int slot = StateSet.hash(bottles) & mask;
+        int base = slot * width;
+        if (iterations[slot] == iteration && matches(base, bottles)) {
+            if (values[slot] <= value) {
+                return false;
+            }
+        } else {
+            System.arraycopy(bottles, 0, keys, base, width);
+            iterations[slot] = iteration;
+        }
+        values[slot] = value;
+        return true;
+    }
+
+    private boolean matches(int base, long[] bottles) {
+        for (int i = 0; i < width; i++) {
+            if (keys[base + i] != bottles[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
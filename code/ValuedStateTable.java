@@ -0,0 +1,13 @@
+package code;
+
+// StateTable that also keeps an int per state, such as its best path cost.
+// Only exact tables can keep values, so searches that need them take this type
+// and cannot be handed a BitStateSet.
+public interface ValuedStateTable extends StateTable {
+    // Value stored for the state, or -1 if it is absent
+    int valueOf(long[] bottles);
+
+    // Add the state with the given value, or lower the value of a present state;
+    // returns false if the state was present with a value no higher than this one
+    boolean addOrLower(long[] bottles, int value);
+}
@@ -1,147 +1,390 @@
 package code;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.PriorityQueue;
 import java.util.Stack;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class WaterSortSearch extends GenericSearch {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
 
     public WaterSortSearch(Node root,String strategy) {
         super(root,strategy);
     }
 
+    public WaterSortSearch(Node root, String strategy, SearchOptions options) {
+        super(root, strategy, options);
+    }
+
     public static String solve(String initialState, String strategy, boolean visualize) {
+        return solve(initialState, strategy, visualize, new SearchOptions());
+    }
+
+    public static String solve(String initialState, String strategy, boolean visualize, SearchOptions options) {
+        return solveResult(initialState, strategy, visualize, options).toString();
+    }
+
+    // Solve and return the plan with the search's counters, the wall time and
+    // the bytes allocated by the calling thread; the listener in the options, if
+    // any, is told before this returns
+    public static SearchResult solveResult(String initialState, String strategy, boolean visualize, SearchOptions options) {
+        long startTime = System.nanoTime();
+        long allocatedBefore = allocatedBytes();
+        SearchResult result = options.solutionCache != null && !visualize
+                ? options.solutionCache.solve(initialState, strategy, options)
+                : search(initialState, strategy, visualize, options);
+        long allocatedAfter = allocatedBytes();
+        result.setResources(System.nanoTime() - startTime, allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore);
+        if (options.listener != null) {
+            options.listener.searchFinished(initialState, strategy, result);
+        }
+        return result;
+    }
+
+    // Bytes allocated so far by the calling thread, or -1 if the JVM cannot tell
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    // Run the search itself, bypassing the solution cache
+    static SearchResult search(String initialState, String strategy, boolean visualize, SearchOptions options) {
         Node start = initializeNode(initialState);
 
-        WaterSortSearch wss = new WaterSortSearch(start,strategy);
+        WaterSortSearch wss = new WaterSortSearch(start,strategy,options);
+        try {
+            return wss.search(strategy, visualize);
+        } finally {
+            wss.release();
+        }
+    }
 
+    private SearchResult search(String strategy, boolean visualize) {
         switch (strategy) {
             case "BF":
-                return wss.breadthFirstSearch(visualize);
+                return breadthFirstSearch(visualize);
             case "DF":
-                return wss.depthFirstSearch(visualize);
+                return depthFirstSearch(visualize);
             case "UC":
-                return wss.uniformCostSearch(visualize);
+                return uniformCostSearch(visualize);
             case "GR1":
-                return wss.greedySearchH1(visualize);
+                return greedySearchH1(visualize);
             case "GR2":
-                return wss.greedySearchH2(visualize);
+                return greedySearchH2(visualize);
             case "AS1":
-                return wss.aStarSearchH1(visualize);
+                return aStarSearchH1(visualize);
             case "AS2":
-                return wss.aStarSearchH2(visualize);
+                return aStarSearchH2(visualize);
+            case "GR3":
+                return greedySearchH3(visualize);
+            case "AS3":
+                return aStarSearchH3(visualize);
             case "ID":
-                return wss.iterativeDeepeningSearch(visualize);
+            case "IDA1":
+            case "IDA2":
+                return iterativeDeepeningSearch(strategy, visualize);
+            case "ARA1":
+            case "ARA2":
+                return anytimeSearch(strategy, visualize);
+            case "BS1":
+            case "BS2":
+            case "BS3":
+                return beamSearch(strategy, visualize);
             default:
                 throw new IllegalArgumentException("Invalid search strategy: " + strategy);
         }
     }
 
+    // Solve every puzzle with the same strategy on a pool of parallelism threads;
+    // results are returned in the order of the puzzles
+    public static List<String> solveAll(List<String> initialStates, String strategy, int parallelism) {
+        return solveAll(initialStates, strategy, parallelism, new SearchOptions());
+    }
+
+    public static List<String> solveAll(List<String> initialStates, String strategy, int parallelism, SearchOptions options) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<String>> pending = new ArrayList<>(initialStates.size());
+            for (String initialState : initialStates) {
+                pending.add(pool.submit(() -> solve(initialState, strategy, false, options)));
+            }
+            List<String> results = new ArrayList<>(pending.size());
+            for (Future<String> result : pending) {
+                results.add(result.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while solving puzzles", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Solving a puzzle failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
     public static Node initializeNode(String initialState) {
-        Bottle.resetMaxCapacity();
         String[] parts = initialState.split(";");
         int numberOfBottles = Integer.parseInt(parts[0]);
         int bottleCapacity = Integer.parseInt(parts[1]);
-        Bottle.setMaxCapacity(bottleCapacity);
 
         ArrayList<Bottle> bottles = new ArrayList<>();
         for (int i = 2; i < parts.length; i++) {
             String colors = parts[i].replace(",", "");
-            Bottle bottle = new Bottle(colors);
+            Bottle bottle = new Bottle(colors, bottleCapacity);
             bottles.add(bottle);
         }
 
-        return new Node(bottles, null, "initial", 0, 0,0);
+        // Search on the packed encoding; the parsed bottles are only needed here
+        return new Node(PackedState.fromBottles(bottles, bottleCapacity), null, "initial", 0, 0,0);
     }
 
 
-    private String breadthFirstSearch(boolean visualize) {
-        Runtime runtime = Runtime.getRuntime();
-
-        long memoryBefore = runtime.totalMemory() - runtime.freeMemory();
-        System.out.println("Memory before BFS: " + memoryBefore + " bytes");
+    private SearchResult breadthFirstSearch(boolean visualize) {
+        if (options.externalDirectory != null) {
+            return new ExternalBreadthFirstSearch(root, options).search();
+        }
+        if (options.parallelism > 1) {
+            return new ParallelBreadthFirstSearch(root, options).search(); // Same result as the serial loop below
+        }
 
         bfsQueue.clear();
         addToFrontier(root, "BF");
 
         while (!bfsQueue.isEmpty()) {
+            if (outOfBudget()) {
+                return exhausted();
+            }
             Node currentNode = bfsQueue.poll();
 
             if (visualize) {
                 visualizeState(currentNode);
             }
             if (currentNode.isGoal()) {
-                long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
-                System.out.println("Memory after BFS: " + memoryAfter + " bytes");
-
-                long memoryUsed = memoryAfter - memoryBefore;
-                System.out.println("BFS - Memory used: " + memoryUsed + " bytes\n");
-
-                return buildPlan(currentNode) + ";" + currentNode.pathCost + ";" + expandedNodes;
+                return result(currentNode);
             }
 
             expandNode(currentNode, "BF");
         }
-
-        long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
-        System.out.println("Memory after BFS (No solution): " + memoryAfter + " bytes");
-
-        long memoryUsed = memoryAfter - memoryBefore;
-        System.out.println("BFS - Memory used (No solution): " + memoryUsed + " bytes\n");
-
-        return "NOSOLUTION";
+        return noSolution();
     }
 
 
-    private String depthFirstSearch(boolean visualize) {
-        Runtime runtime = Runtime.getRuntime();
-
-        long memoryBefore = runtime.totalMemory() - runtime.freeMemory();
-        System.out.println("Memory before DFS: " + memoryBefore + " bytes");
-
-        dfsStack.clear();
-        addToFrontier(root, "DF");
-
-        while (!dfsStack.isEmpty()) {
-            Node currentNode = dfsStack.pop();
+    // Depth-first search on a single working state. The frontier holds encoded
+    // moves instead of nodes; popping a move rewinds the working state to the
+    // move's parent by undoing pours, so nothing is cloned per child and the
+    // expansion order matches a stack of nodes
+    private SearchResult depthFirstSearch(boolean visualize) {
+        if (options.lazySuccessors) {
+            return lazyDepthFirstSearch(visualize);
+        }
+        PackedState working = root.state.copy();
+        int size = working.size();
+
+        int[] pending = new int[16]; // Moves waiting on the frontier
+        int[] pendingDepth = new int[16]; // Depth of the node each pending move produces
+        int pendingCount = 0;
+
+        int[] path = new int[16]; // Moves applied to reach the working state
+        int[] pathAmount = new int[16]; // Layers poured by each applied move, used to undo it
+        int[] pathCost = new int[17]; // Path cost after each applied move
+        int depth = 0;
+        int[] closestMoves = null; // Moves to the expanded state with the fewest out-of-place layers
+        int closestLayers = Integer.MAX_VALUE;
+
+        boolean atRoot = true;
+        while (atRoot || pendingCount > 0) {
+            if (!atRoot) {
+                pendingCount--;
+                int move = pending[pendingCount];
+                int moveDepth = pendingDepth[pendingCount];
+
+                // Rewind to the parent of the popped move
+                while (depth >= moveDepth) {
+                    depth--;
+                    working.unpour(moveSource(path[depth]), moveTarget(path[depth]), pathAmount[depth]);
+                }
+
+                if (depth == path.length) {
+                    path = Arrays.copyOf(path, depth * 2);
+                    pathAmount = Arrays.copyOf(pathAmount, depth * 2);
+                    pathCost = Arrays.copyOf(pathCost, depth * 2 + 1);
+                }
+                int amount = working.pour(moveSource(move), moveTarget(move));
+                path[depth] = move;
+                pathAmount[depth] = amount;
+                pathCost[depth + 1] = pathCost[depth] + amount;
+                depth++;
+            }
+            atRoot = false;
 
             if (visualize) {
-                visualizeState(currentNode);
+                visualizeState(working);
             }
 
-            if (currentNode.isGoal()) {
-                long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
-                System.out.println("Memory after DFS: " + memoryAfter + " bytes");
-
-                long memoryUsed = memoryAfter - memoryBefore;
-                System.out.println("DFS - Memory used: " + memoryUsed + " bytes\n");
+            if (working.isGoal()) {
+                return result(path, depth, pathCost[depth]);
+            }
 
-                return buildPlan(currentNode) + ";" + currentNode.pathCost + ";" + expandedNodes; // Return the result
+            if (outOfBudget()) {
+                return exhausted(closestMoves);
+            }
+            if (working.h2() < closestLayers) {
+                closestLayers = working.h2();
+                closestMoves = Arrays.copyOf(path, depth);
             }
 
-            expandNode(currentNode, "DF");
+            // Expand the working state, pushing every move to an unseen state
+            expandedNodes++;
+            int lastMove = depth > 0 ? path[depth - 1] : -1;
+            int lastAmount = depth > 0 ? pathAmount[depth - 1] : 0;
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    if (isPruned(working, i, j, lastMove, lastAmount, false)) {
+                        continue;
+                    }
+                    int amount = working.pour(i, j);
+                    if (amount == 0) {
+                        continue;
+                    }
+                    generatedCount++;
+                    if (generatedNodes.add(keyOf(working))) { // The set copies the bottles, nothing is allocated here
+                        if (pendingCount == pending.length) {
+                            pending = Arrays.copyOf(pending, pendingCount * 2);
+                            pendingDepth = Arrays.copyOf(pendingDepth, pendingCount * 2);
+                        }
+                        pending[pendingCount] = encodeMove(i, j);
+                        pendingDepth[pendingCount] = depth + 1;
+                        pendingCount++;
+                    } else {
+                        duplicateCount++;
+                    }
+                    working.unpour(i, j, amount);
+                }
+            }
+            peakFrontier = Math.max(peakFrontier, pendingCount);
         }
+        return noSolution();
+    }
 
-        long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
-        System.out.println("Memory after DFS (No solution): " + memoryAfter + " bytes");
+    // Depth-first search with a successor cursor per depth instead of a stack of
+    // pending moves. Entering a state only sets its cursor; moves are then tried
+    // one at a time, each checked against the seen set right after the pour,
+    // and the first unseen one is followed at once. Backtracking undoes the
+    // pour and resumes the parent's cursor. Siblings are tried in the order the
+    // move stack would pop them, but are only generated once the search comes
+    // back, so dead subtrees cost neither set entries nor pending moves.
+    private SearchResult lazyDepthFirstSearch(boolean visualize) {
+        PackedState working = root.state.copy();
+        int size = working.size();
+        int moves = size * size; // Move k pours k / size into k % size
+
+        int[] cursor = new int[16]; // Next move to try at each depth, counting down
+        int[] path = new int[16]; // Moves applied to reach the working state
+        int[] pathAmount = new int[16]; // Layers poured by each applied move, used to undo it
+        int[] pathCost = new int[17]; // Path cost after each applied move
+        int depth = 0;
+        int[] closestMoves = null; // Moves to the expanded state with the fewest out-of-place layers
+        int closestLayers = Integer.MAX_VALUE;
+        boolean entered = true; // The working state was just reached and is not expanded yet
+        generatedNodes.add(keyOf(working)); // The root is never re-entered either
+
+        while (true) {
+            if (entered) {
+                entered = false;
+                if (visualize) {
+                    visualizeState(working);
+                }
+                if (working.isGoal()) {
+                    return result(path, depth, pathCost[depth]);
+                }
+                if (outOfBudget()) {
+                    return exhausted(closestMoves);
+                }
+                if (working.h2() < closestLayers) {
+                    closestLayers = working.h2();
+                    closestMoves = Arrays.copyOf(path, depth);
+                }
+                expandedNodes++;
+                if (depth == cursor.length) {
+                    cursor = Arrays.copyOf(cursor, depth * 2);
+                    path = Arrays.copyOf(path, depth * 2);
+                    pathAmount = Arrays.copyOf(pathAmount, depth * 2);
+                    pathCost = Arrays.copyOf(pathCost, depth * 2 + 1);
+                }
+                cursor[depth] = moves - 1;
+                peakFrontier = Math.max(peakFrontier, depth + 1);
+            }
 
-        long memoryUsed = memoryAfter - memoryBefore;
-        System.out.println("DFS - Memory used (No solution): " + memoryUsed + " bytes\n");
+            // Advance the cursor to the next move that reaches an unseen state
+            int lastMove = depth > 0 ? path[depth - 1] : -1;
+            int lastAmount = depth > 0 ? pathAmount[depth - 1] : 0;
+            int next = -1;
+            int amount = 0;
+            while (next < 0 && cursor[depth] >= 0) {
+                int k = cursor[depth]--;
+                int i = k / size;
+                int j = k % size;
+                if (isPruned(working, i, j, lastMove, lastAmount, false)) {
+                    continue;
+                }
+                amount = working.pour(i, j);
+                if (amount == 0) {
+                    continue;
+                }
+                generatedCount++;
+                if (generatedNodes.add(keyOf(working))) {
+                    next = encodeMove(i, j); // Keep the pour and descend
+                } else {
+                    duplicateCount++;
+                    working.unpour(i, j, amount);
+                }
+            }
 
-        return "NOSOLUTION";
+            if (next >= 0) {
+                path[depth] = next;
+                pathAmount[depth] = amount;
+                pathCost[depth + 1] = pathCost[depth] + amount;
+                depth++;
+                entered = true;
+            } else if (depth == 0) {
+                return noSolution();
+            } else {
+                depth--;
+                working.unpour(moveSource(path[depth]), moveTarget(path[depth]), pathAmount[depth]);
+            }
+        }
     }
 
-    private String uniformCostSearch(boolean visualize) {
-        Runtime runtime = Runtime.getRuntime();
-
-        long memoryBefore = runtime.totalMemory() - runtime.freeMemory();
-        System.out.println("Memory before UCS: " + memoryBefore + " bytes");
+    private SearchResult uniformCostSearch(boolean visualize) {
+        if (usesNodePool()) {
+            return pooledSearch("UC", visualize);
+        }
 
         priorityQueue.clear();
         addToFrontier(root, "UC");
 
         while (!priorityQueue.isEmpty()) {
+            if (outOfBudget()) {
+                return exhausted();
+            }
             Node currentNode = priorityQueue.poll();
 
             if (visualize) {
@@ -149,271 +392,675 @@ public class WaterSortSearch extends GenericSearch {
             }
 
             if (currentNode.isGoal()) {
-                long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
-                System.out.println("Memory after UCS: " + memoryAfter + " bytes");
-
-                long memoryUsed = memoryAfter - memoryBefore;
-                System.out.println("UCS - Memory used: " + memoryUsed + " bytes\n");
-
-                return buildPlan(currentNode) + ";" + currentNode.pathCost + ";" + expandedNodes;
+                return result(currentNode);
             }
 
             expandNode(currentNode, "UC");
         }
-
-        long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
-        System.out.println("Memory after UCS (No solution): " + memoryAfter + " bytes");
-
-        long memoryUsed = memoryAfter - memoryBefore;
-        System.out.println("UCS - Memory used (No solution): " + memoryUsed + " bytes\n");
-
-        return "NOSOLUTION";
+        return noSolution();
     }
 
+    // UC, greedy and A* keep their nodes in a NodePool unless Node objects are
+    // asked for, the PriorityQueue frontier is chosen or the board is too wide
+    private boolean usesNodePool() {
+        return options.nodePool && options.bucketQueue && root.state.size() <= NodePool.MAX_BOTTLES;
+    }
 
+    // UC, greedy or A* on a NodePool with an IntBucketQueue frontier. It follows
+    // expandNode and addToFrontier step for step, so plans and counters match
+    // the search on Node objects, but the frontier and parent chains are ints
+    // and packed bottles, and operators are only built for the final plan.
+    private SearchResult pooledSearch(String strategy, boolean visualize) {
+        int width = root.state.size();
+        NodePool pool = new NodePool(width);
+        BucketQueue.TieBreak tieBreak = options.tieBreak != null
+                ? options.tieBreak : BucketQueue.defaultTieBreak(strategy);
+        IntBucketQueue frontier = new IntBucketQueue(strategy, tieBreak);
+        PackedState working = new PackedState(new long[width], root.state.capacity);
+        int closest = -1; // Expanded node with the fewest out-of-place layers
+        int closestH2 = Integer.MAX_VALUE;
+
+        boolean defer = defersHeuristic(strategy);
+        BitSet deferred = new BitSet(); // Nodes queued under a bound, not evaluated yet
+
+        int rootH = heuristic(root.state, strategy);
+        frontier.add(pool.addRoot(root.state.bottles, rootH), 0, rootH);
+
+        while (!frontier.isEmpty()) {
+            if (outOfBudget()) {
+                return exhausted(closest < 0 ? null : pool.moves(closest));
+            }
+            int node = frontier.poll();
+            pool.load(node, working);
+            if (defer && deferred.get(node)) {
+                // Evaluate on reaching the front; queue again if the key went up
+                deferred.clear(node);
+                int h = heuristic(working, strategy);
+                int bound = pool.heuristic(node);
+                pool.setHeuristic(node, h);
+                if (h > bound) {
+                    frontier.add(node, pool.pathCost(node), h);
+                    continue;
+                }
+            }
 
+            if (visualize) {
+                visualizeState(working);
+            }
 
-    private String iterativeDeepeningSearch(boolean visualize) {
-        Runtime runtime = Runtime.getRuntime();
-
-        long memoryBefore = runtime.totalMemory() - runtime.freeMemory();
-        System.out.println("Memory before IDS: " + memoryBefore + " bytes");
+            if (working.isGoal()) {
+                return result(pool.moves(node), pool.depth(node), pool.pathCost(node));
+            }
 
-        int depthLimit = 0;
-        dfsStack.push(root);
+            expandedNodes++;
+            if (working.h2() < closestH2) {
+                closest = node;
+                closestH2 = working.h2();
+            }
+            int lastMove = pool.move(node);
+            int lastAmount = pool.moveAmount(node);
+            int pathCost = pool.pathCost(node);
+            for (int i = 0; i < width; i++) {
+                for (int j = 0; j < width; j++) {
+                    if (isPruned(working, i, j, lastMove, lastAmount, false)) {
+                        continue;
+                    }
+                    int cost = working.pour(i, j);
+                    if (cost == 0) {
+                        continue;
+                    }
+                    generatedCount++;
+                    if (generatedNodes.add(keyOf(working))) {
+                        int h = defer ? deferredHeuristic(strategy, pool.heuristic(node), cost) : heuristic(working, strategy);
+                        int child = pool.add(working.bottles, node, i, j, pathCost + cost, h);
+                        if (defer) {
+                            deferred.set(child);
+                        }
+                        frontier.add(child, pathCost + cost, h);
+                    } else {
+                        duplicateCount++;
+                    }
+                    working.unpour(i, j, cost);
+                }
+            }
+            peakFrontier = Math.max(peakFrontier, frontier.size());
+        }
+        return noSolution();
+    }
 
-        while (!dfsStack.isEmpty()) {
-            Node node = dfsStack.pop();
 
-            if (node.isGoal()) {
-                long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
-                System.out.println("Memory after IDS: " + memoryAfter + " bytes");
+    // Iterative deepening on one working state with pour/undo. ID bounds the
+    // depth in moves; IDA1 and IDA2 bound f = g + h with the path cost and H1 or
+    // H2, and raise the bound to the smallest f that exceeded it, so their plans
+    // cost no more than A*'s. Only the current path is stored: a child is skipped
+    // if its state is already on the path, or, with a transposition table, if it
+    // was entered with no higher depth or cost earlier in the same iteration.
+    // Memory is O(depth) plus the fixed-size table.
+    private SearchResult iterativeDeepeningSearch(String strategy, boolean visualize) {
+        boolean byCost = !strategy.equals("ID");
+        boolean useH1 = strategy.equals("IDA1");
+        PackedState working = root.state.copy();
+        int size = working.size();
+        TranspositionTable table = options.transpositionTable > 0
+                ? new TranspositionTable(size, options.transpositionTable) : null;
+
+        int[] path = new int[16]; // Moves applied to reach the working state
+        int[] pathAmount = new int[16]; // Layers poured by each applied move, used to undo it
+        int[] pathCost = new int[17]; // Path cost after each applied move
+        int[] nextMove = new int[17]; // Next move to try at each depth, as source * size + target
+        long[] pathKeys = new long[17 * size]; // Keys of the states along the path, root first
+        int[] pathHashes = new int[17];
+        int[] closestMoves = null; // Moves to the expanded state with the fewest out-of-place layers
+        int closestLayers = Integer.MAX_VALUE;
+
+        int bound = byCost ? (useH1 ? working.h1() : working.h2()) : 0;
+        while (true) {
+            int nextBound = Integer.MAX_VALUE; // Smallest depth or f cut off by this bound
+            if (table != null) {
+                table.nextIteration();
+            }
+            long[] rootKey = keyOf(working);
+            System.arraycopy(rootKey, 0, pathKeys, 0, size);
+            pathHashes[0] = StateSet.hash(rootKey);
+            if (table != null) {
+                table.enter(rootKey, 0);
+            }
 
-                long memoryUsed = memoryAfter - memoryBefore;
-                System.out.println("IDS - Memory used: " + memoryUsed + " bytes\n");
+            int depth = 0;
+            nextMove[0] = 0;
+            boolean entered = true; // The working state was just reached
+            while (depth >= 0) {
+                if (entered) {
+                    entered = false;
+                    if (visualize) {
+                        visualizeState(working);
+                    }
+                    if (working.isGoal()) {
+                        return result(path, depth, pathCost[depth]);
+                    }
+                    if (outOfBudget()) {
+                        return exhausted(closestMoves);
+                    }
+                    if (working.h2() < closestLayers) {
+                        closestLayers = working.h2();
+                        closestMoves = Arrays.copyOf(path, depth);
+                    }
+                    expandedNodes++;
+                }
+
+                int move = nextMove[depth];
+                int amount = 0;
+                int lastMove = depth > 0 ? path[depth - 1] : -1;
+                int lastAmount = depth > 0 ? pathAmount[depth - 1] : 0;
+                while (move < size * size
+                        && (isPruned(working, move / size, move % size, lastMove, lastAmount, table == null)
+                            || (amount = working.pour(move / size, move % size)) == 0)) {
+                    move++;
+                }
+                if (move == size * size) {
+                    // All moves tried, backtrack
+                    if (--depth >= 0) {
+                        working.unpour(moveSource(path[depth]), moveTarget(path[depth]), pathAmount[depth]);
+                    }
+                    continue;
+                }
+                nextMove[depth] = move + 1;
+                int source = move / size;
+                int target = move % size;
+                generatedCount++;
+
+                int cost = pathCost[depth] + amount;
+                int value = byCost ? cost + (useH1 ? working.h1() : working.h2()) : depth + 1;
+                if (value > bound) {
+                    nextBound = Math.min(nextBound, value);
+                    working.unpour(source, target, amount);
+                    continue;
+                }
+                long[] key = keyOf(working);
+                int hash = StateSet.hash(key);
+                if (isOnPath(pathKeys, pathHashes, depth, key, hash)
+                        || (table != null && !table.enter(key, byCost ? cost : depth + 1))) {
+                    duplicateCount++;
+                    working.unpour(source, target, amount);
+                    continue;
+                }
+
+                if (depth + 1 == path.length) {
+                    path = Arrays.copyOf(path, path.length * 2);
+                    pathAmount = Arrays.copyOf(pathAmount, pathAmount.length * 2);
+                    pathCost = Arrays.copyOf(pathCost, pathCost.length * 2);
+                    nextMove = Arrays.copyOf(nextMove, nextMove.length * 2);
+                    pathKeys = Arrays.copyOf(pathKeys, pathKeys.length * 2);
+                    pathHashes = Arrays.copyOf(pathHashes, pathHashes.length * 2);
+                }
+                path[depth] = encodeMove(source, target);
+                pathAmount[depth] = amount;
+                depth++;
+                pathCost[depth] = cost;
+                nextMove[depth] = 0;
+                System.arraycopy(key, 0, pathKeys, depth * size, size);
+                pathHashes[depth] = hash;
+                peakClosed = Math.max(peakClosed, depth + 1); // States on the path
+                entered = true;
+            }
 
-                return buildPlan(node) + ";" + node.pathCost + ";" + expandedNodes;
+            if (nextBound == Integer.MAX_VALUE) {
+                break; // Nothing was cut off, so the whole space has been searched
             }
+            bound = nextBound;
+        }
+        return noSolution();
+    }
 
-            if (node.depth == depthLimit && dfsStack.isEmpty()) {
-                Node clonedRoot = root.getClone();
-                explored.clear();
-                generatedNodes.clear();
-                statesEntered.clear();
-                dfsStack.add(clonedRoot);
-                depthLimit++;
+    // Check if the state is one of the states on the path up to depth
+    private static boolean isOnPath(long[] pathKeys, int[] pathHashes, int depth, long[] key, int hash) {
+        int size = key.length;
+        for (int d = 0; d <= depth; d++) {
+            if (pathHashes[d] != hash) {
                 continue;
             }
-
-            if (node.depth != depthLimit) {
-                expandNode(node, "DF");
+            boolean same = true;
+            for (int i = 0; i < size && same; i++) {
+                same = pathKeys[d * size + i] == key[i];
             }
-
-            if (dfsStack.isEmpty() && !checkSatesEntered()) {
-                Node clonedRoot = root.getClone();
-                explored.clear();
-                generatedNodes.clear();
-                statesEntered.clear();
-                dfsStack.add(clonedRoot);
-                depthLimit++;
+            if (same) {
+                return true;
             }
         }
-
-        long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
-        System.out.println("Memory after IDS (No solution): " + memoryAfter + " bytes");
-
-        long memoryUsed = memoryAfter - memoryBefore;
-        System.out.println("IDS - Memory used (No solution): " + memoryUsed + " bytes\n");
-
-        return "NOSOLUTION";
+        return false;
     }
 
-    public boolean checkSatesEntered(){
-        for (String bottles : statesEntered){
-            if(!explored.contains(bottles))
-                return false;
+
+    // Anytime repairing A* (ARA*) with H1 or H2. Each iteration is a weighted A*
+    // ordered by g + w * h that runs until no open node can beat the incumbent;
+    // the weight starts at the option's initial weight and drops by its step
+    // after every iteration, down to 1. States are not expanded twice within an
+    // iteration: a closed state reached more cheaply is parked and reopened in
+    // the next one, so later iterations reuse the earlier search instead of
+    // starting over. After each iteration ARA1 reports the plan with the bound
+    // min(w, cost / min g + h over open and parked nodes), which holds because H1
+    // is admissible, and stops once the bound reaches 1. H2 is not admissible,
+    // so ARA2 reports no bound (NaN) and stops after its weight-1 iteration or
+    // when no node is left. Both stop early once the anytime budget has passed,
+    // which only counts once a plan exists. If the
+    // search budget runs out, the best plan so far is returned, or a
+    // budget-exhausted result when there is none yet.
+    private SearchResult anytimeSearch(String strategy, boolean visualize) {
+        boolean useH1 = strategy.equals("ARA1");
+        boolean admissible = useH1; // Only then do the weight and f-values bound the optimum
+        long deadline = options.anytimeMillis > 0 ? System.nanoTime() + options.anytimeMillis * 1_000_000 : Long.MAX_VALUE;
+        int width = root.state.size();
+        ValuedStateTable bestCost = newStateTable(); // g per state
+        StateTable closed = options.offHeapStates > 0 ? newStateTable() : new StateSet(width); // States expanded in this iteration
+        List<Node> parked = new ArrayList<>(); // Closed states reached more cheaply, open again next iteration
+        double weight = options.anytimeWeight;
+        PriorityQueue<Node> open = new PriorityQueue<>(new NodeComparator(strategy, weight));
+
+        Node incumbent = root.isGoal() ? root : null;
+        root.heuristicValue = useH1 ? root.calculateH1() : root.calculateH2();
+        bestCost.addOrLower(keyOf(root.state), 0);
+        if (incumbent == null) {
+            open.add(root);
         }
-        return true;
-    }
+        SearchResult best = null;
+        boolean timeUp = false;
+        while (true) {
+            while (!open.isEmpty() && !timeUp) {
+                Node node = open.peek();
+                if (incumbent != null && node.pathCost + weight * node.heuristicValue >= incumbent.pathCost) {
+                    break; // No open node can lead to a cheaper plan at this weight
+                }
+                peakClosed = bestCost.size();
+                if (outOfBudget()) {
+                    if (incumbent == null) {
+                        return exhausted();
+                    }
+                    timeUp = true; // Report the incumbent as if the anytime budget ran out
+                    break;
+                }
+                open.poll();
+                long[] key = keyOf(node.state);
+                if (bestCost.valueOf(key) != node.pathCost) {
+                    continue; // A cheaper copy of the state was queued later
+                }
+                closed.add(key);
+                if (visualize) {
+                    visualizeState(node);
+                }
+                expandedNodes++;
+                noteClosest(node);
+                if (incumbent != null && (expandedNodes & 255) == 0 && System.nanoTime() > deadline) {
+                    timeUp = true;
+                }
+
+                PackedState working = node.state.copy();
+                for (int i = 0; i < width; i++) {
+                    for (int j = 0; j < width; j++) {
+                        if (isPruned(working, i, j, node.move, node.moveAmount, false)) {
+                            continue;
+                        }
+                        int cost = working.pour(i, j);
+                        if (cost == 0) {
+                            continue;
+                        }
+                        generatedCount++;
+                        int pathCost = node.pathCost + cost;
+                        if (incumbent != null && pathCost >= incumbent.pathCost) {
+                            working.unpour(i, j, cost); // Cannot lead to a cheaper plan
+                            continue;
+                        }
+                        long[] childKey = keyOf(working);
+                        if (!bestCost.addOrLower(childKey, pathCost)) {
+                            duplicateCount++;
+                            working.unpour(i, j, cost);
+                            continue;
+                        }
+                        Node child = node.createChild(working.copy(), i, j, cost);
+                        if (child.isGoal()) {
+                            incumbent = child;
+                        } else {
+                            child.heuristicValue = useH1 ? child.calculateH1() : child.calculateH2();
+                            if (closed.contains(childKey)) {
+                                parked.add(child);
+                            } else {
+                                open.add(child);
+                            }
+                        }
+                        working.unpour(i, j, cost);
+                    }
+                }
+                peakFrontier = Math.max(peakFrontier, open.size() + parked.size());
+            }
+            peakClosed = bestCost.size();
+            if (incumbent == null) {
+                return noSolution(); // Every reachable state was expanded
+            }
 
+            double bound = Double.NaN;
+            if (admissible) {
+                // Lower bound on the optimal cost from the nodes still waiting
+                int lowest = Integer.MAX_VALUE;
+                for (Node node : open) {
+                    lowest = Math.min(lowest, node.pathCost + node.heuristicValue);
+                }
+                for (Node node : parked) {
+                    lowest = Math.min(lowest, node.pathCost + node.heuristicValue);
+                }
+                bound = lowest >= incumbent.pathCost ? 1 : Math.min(weight, (double) incumbent.pathCost / lowest);
+                if (best != null) {
+                    bound = Math.min(bound, best.getSuboptimalityBound()); // Earlier bounds still hold for this plan
+                }
+            }
+            SearchResult current = result(incumbent);
+            current.setSuboptimalityBound(bound);
+            if (options.listener != null
+                    && (best == null || current.getCost() < best.getCost() || bound < best.getSuboptimalityBound())) {
+                options.listener.solutionFound(strategy, current);
+            }
+            best = current;
+            boolean finished = admissible ? bound <= 1 : weight <= 1 || (open.isEmpty() && parked.isEmpty());
+            if (finished || timeUp || System.nanoTime() > deadline) {
+                return best;
+            }
 
-    private void visualizeState(Node node) {
-        System.out.println("Current State:");
-        for (Bottle bottle : node.state) {
-            System.out.println(bottle.layers);
+            // Next iteration: lower the weight and reopen the parked states
+            weight = Math.max(1, weight - options.anytimeWeightStep);
+            PriorityQueue<Node> next = new PriorityQueue<>(new NodeComparator(strategy, weight));
+            next.addAll(open);
+            next.addAll(parked);
+            open = next;
+            parked.clear();
+            closed.clear();
         }
-        System.out.println("----------------");
     }
 
-    private String buildPlan(Node goalNode) {
-        StringBuilder planBuilder = new StringBuilder();
-        Node currentNode = goalNode;
+    // Beam search with H1, H2 or H3. Each layer holds at most the beam width of
+    // nodes; all their children are generated and only the best ones by h (then
+    // lower path cost, then generation order) form the next layer. Duplicates
+    // are dropped with a fixed-size TranspositionTable of the states seen so far
+    // and their path cost, so memory per layer stays bounded by the width and
+    // the window, not by the size of the board. The first layer that contains a
+    // goal ends the search with its cheapest goal. Beam search is incomplete:
+    // NOSOLUTION only means the beam died out, and with a small window it can
+    // keep cycling until a budget stops it.
+    private SearchResult beamSearch(String strategy, boolean visualize) {
+        if (root.isGoal()) {
+            return result(root);
+        }
+        int width = options.beamWidth;
+        TranspositionTable seen = options.beamWindow > 0
+                ? new TranspositionTable(root.state.size(), options.beamWindow) : null;
+        NodeComparator order = new NodeComparator(strategy);
+        List<Node> layer = new ArrayList<>();
+        List<Node> children = new ArrayList<>();
+        layer.add(root);
+        if (seen != null) {
+            seen.enter(keyOf(root.state), 0);
+        }
+        long entered = 1; // States written to the window, an upper bound on what it holds
+
+        while (!layer.isEmpty()) {
+            Node goal = null;
+            for (Node node : layer) {
+                if (outOfBudget()) {
+                    return exhausted();
+                }
+                if (visualize) {
+                    visualizeState(node);
+                }
+                expandedNodes++;
+                noteClosest(node);
+
+                PackedState working = node.state.copy();
+                int size = working.size();
+                for (int i = 0; i < size; i++) {
+                    for (int j = 0; j < size; j++) {
+                        if (isPruned(working, i, j, node.move, node.moveAmount, false)) {
+                            continue;
+                        }
+                        int cost = working.pour(i, j);
+                        if (cost == 0) {
+                            continue;
+                        }
+                        generatedCount++;
+                        if (seen != null && !seen.enter(keyOf(working), node.pathCost + cost)) {
+                            duplicateCount++;
+                        } else {
+                            entered++;
+                            Node child = node.createChild(working.copy(), i, j, cost);
+                            if (child.isGoal()) {
+                                if (goal == null || child.pathCost < goal.pathCost) {
+                                    goal = child;
+                                }
+                            } else {
+                                child.heuristicValue = beamHeuristic(child, strategy);
+                                children.add(child);
+                            }
+                        }
+                        working.unpour(i, j, cost);
+                    }
+                }
+            }
+            peakFrontier = Math.max(peakFrontier, children.size());
+            if (seen != null) {
+                peakClosed = Math.min(entered, Integer.highestOneBit(options.beamWindow));
+            }
+            if (goal != null) {
+                return result(goal);
+            }
 
-        while (currentNode.parent != null) {
-            planBuilder.insert(0, currentNode.operator + ",");
-            currentNode = currentNode.parent;
+            // Keep the best width children; the sort is stable, so ties stay in generation order
+            if (children.size() > width) {
+                children.sort(order);
+                children.subList(width, children.size()).clear();
+            }
+            List<Node> next = children;
+            children = layer;
+            children.clear();
+            layer = next;
         }
+        return noSolution();
+    }
 
-        if (planBuilder.length() > 0) {
-            planBuilder.setLength(planBuilder.length() - 1);
+    private int beamHeuristic(Node node, String strategy) {
+        switch (strategy) {
+            case "BS1":
+                return node.calculateH1();
+            case "BS2":
+                return node.calculateH2();
+            default:
+                return node.calculateH3(patternDatabase);
         }
+    }
 
-        return planBuilder.toString();
+    private void visualizeState(Node node) {
+        visualizeState(node.state);
     }
 
+    private void visualizeState(PackedState state) {
+        System.out.println("Current State:");
+        for (int i = 0; i < state.size(); i++) {
+            System.out.println(state.bottleToString(i));
+        }
+        System.out.println("----------------");
+    }
 
-    private String greedySearchH1(boolean visualize) {
-        Runtime runtime = Runtime.getRuntime();
 
-        long memoryBefore = runtime.totalMemory() - runtime.freeMemory();
-        System.out.println("Memory before Greedy H1: " + memoryBefore + " bytes");
+    private SearchResult greedySearchH1(boolean visualize) {
+        if (usesNodePool()) {
+            return pooledSearch("GR1", visualize);
+        }
 
         priorityQueue.clear();
         addToFrontier(root, "GR1");
 
         while (!priorityQueue.isEmpty()) {
-            Node currentNode = priorityQueue.poll();
+            if (outOfBudget()) {
+                return exhausted();
+            }
+            Node currentNode = pollPriorityQueue("GR1");
 
             if (visualize) {
                 visualizeState(currentNode);
             }
 
             if (currentNode.isGoal()) {
-                long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
-                System.out.println("Memory after Greedy H1: " + memoryAfter + " bytes");
-
-                long memoryUsed = memoryAfter - memoryBefore;
-                System.out.println("Greedy H1 - Memory used: " + memoryUsed + " bytes\n");
-
-                return buildPlan(currentNode) + ";" + currentNode.pathCost + ";" + expandedNodes;
+                return result(currentNode);
             }
 
             expandNode(currentNode, "GR1");
         }
-
-        long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
-        System.out.println("Memory after Greedy H1 (No solution): " + memoryAfter + " bytes");
-
-        long memoryUsed = memoryAfter - memoryBefore;
-        System.out.println("Greedy H1 - Memory used (No solution): " + memoryUsed + " bytes\n");
-
-        return "NOSOLUTION";
+        return noSolution();
     }
 
-    private String greedySearchH2(boolean visualize) {
-        Runtime runtime = Runtime.getRuntime();
-
-        long memoryBefore = runtime.totalMemory() - runtime.freeMemory();
-        System.out.println("Memory before Greedy H2: " + memoryBefore + " bytes");
+    private SearchResult greedySearchH2(boolean visualize) {
+        if (usesNodePool()) {
+            return pooledSearch("GR2", visualize);
+        }
 
         priorityQueue.clear();
         addToFrontier(root, "GR2");
 
         while (!priorityQueue.isEmpty()) {
-            Node currentNode = priorityQueue.poll();
+            if (outOfBudget()) {
+                return exhausted();
+            }
+            Node currentNode = pollPriorityQueue("GR2");
 
             if (visualize) {
                 visualizeState(currentNode);
             }
 
             if (currentNode.isGoal()) {
-                long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
-                System.out.println("Memory after Greedy H2: " + memoryAfter + " bytes");
-
-                long memoryUsed = memoryAfter - memoryBefore;
-                System.out.println("Greedy H2 - Memory used: " + memoryUsed + " bytes\n");
-
-                return buildPlan(currentNode) + ";" + currentNode.pathCost + ";" + expandedNodes;
+                return result(currentNode);
             }
 
             expandNode(currentNode, "GR2");
         }
-
-        long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
-        System.out.println("Memory after Greedy H2 (No solution): " + memoryAfter + " bytes");
-
-        long memoryUsed = memoryAfter - memoryBefore;
-        System.out.println("Greedy H2 - Memory used (No solution): " + memoryUsed + " bytes\n");
-
-        return "NOSOLUTION";
+        return noSolution();
     }
 
 
-    private String aStarSearchH1(boolean visualize) {
-        Runtime runtime = Runtime.getRuntime();
+    private SearchResult aStarSearchH1(boolean visualize) {
+        if (options.parallelism > 1) {
+            return new ParallelAStar(root, "AS1", options).search(); // Hash-distributed A*, no visualization
+        }
 
-        long memoryBefore = runtime.totalMemory() - runtime.freeMemory();
-        System.out.println("Memory before A* H1: " + memoryBefore + " bytes");
+        if (usesNodePool()) {
+            return pooledSearch("AS1", visualize);
+        }
 
         priorityQueue.clear();
         addToFrontier(root, "AS1");
 
         while (!priorityQueue.isEmpty()) {
-            Node currentNode = priorityQueue.poll();
+            if (outOfBudget()) {
+                return exhausted();
+            }
+            Node currentNode = pollPriorityQueue("AS1");
 
             if (visualize) {
                 visualizeState(currentNode);
             }
 
             if (currentNode.isGoal()) {
-                long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
-                System.out.println("Memory after A* H1: " + memoryAfter + " bytes");
-
-                long memoryUsed = memoryAfter - memoryBefore;
-                System.out.println("A* H1 - Memory used: " + memoryUsed + " bytes\n");
-
-                return buildPlan(currentNode) + ";" + currentNode.pathCost + ";" + expandedNodes;
+                return result(currentNode);
             }
 
             expandNode(currentNode, "AS1");
         }
-
-        long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
-        System.out.println("Memory after A* H1 (No solution): " + memoryAfter + " bytes");
-
-        long memoryUsed = memoryAfter - memoryBefore;
-        System.out.println("A* H1 - Memory used (No solution): " + memoryUsed + " bytes\n");
-
-        return "NOSOLUTION";
+        return noSolution();
     }
 
 
-    private String aStarSearchH2(boolean visualize) {
-        Runtime runtime = Runtime.getRuntime();
+    private SearchResult aStarSearchH2(boolean visualize) {
+        if (options.parallelism > 1) {
+            return new ParallelAStar(root, "AS2", options).search(); // Hash-distributed A*, no visualization
+        }
 
-        long memoryBefore = runtime.totalMemory() - runtime.freeMemory();
-        System.out.println("Memory before A* H2: " + memoryBefore + " bytes");
+        if (usesNodePool()) {
+            return pooledSearch("AS2", visualize);
+        }
 
         priorityQueue.clear();
         addToFrontier(root, "AS2");
 
         while (!priorityQueue.isEmpty()) {
-            Node currentNode = priorityQueue.poll();
+            if (outOfBudget()) {
+                return exhausted();
+            }
+            Node currentNode = pollPriorityQueue("AS2");
 
             if (visualize) {
                 visualizeState(currentNode);
             }
 
             if (currentNode.isGoal()) {
-                long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
-                System.out.println("Memory after A* H2: " + memoryAfter + " bytes");
+                return result(currentNode);
+            }
+
+            expandNode(currentNode, "AS2");
+        }
+        return noSolution();
+    }
+
+    private SearchResult greedySearchH3(boolean visualize) {
+        if (usesNodePool()) {
+            return pooledSearch("GR3", visualize);
+        }
+
+        priorityQueue.clear();
+        addToFrontier(root, "GR3");
 
-                long memoryUsed = memoryAfter - memoryBefore;
-                System.out.println("A* H2 - Memory used: " + memoryUsed + " bytes\n");
+        while (!priorityQueue.isEmpty()) {
+            if (outOfBudget()) {
+                return exhausted();
+            }
+            Node currentNode = pollPriorityQueue("GR3");
 
-                return buildPlan(currentNode) + ";" + currentNode.pathCost + ";" + expandedNodes;
+            if (visualize) {
+                visualizeState(currentNode);
             }
 
-            expandNode(currentNode, "AS2");
+            if (currentNode.isGoal()) {
+                return result(currentNode);
+            }
+
+            expandNode(currentNode, "GR3");
         }
+        return noSolution();
+    }
 
-        long memoryAfter = runtime.totalMemory() - runtime.freeMemory();
-        System.out.println("Memory after A* H2 (No solution): " + memoryAfter + " bytes");
 
-        long memoryUsed = memoryAfter - memoryBefore;
-        System.out.println("A* H2 - Memory used (No solution): " + memoryUsed + " bytes\n");
+    private SearchResult aStarSearchH3(boolean visualize) {
+        if (options.parallelism > 1) {
+            return new ParallelAStar(root, "AS3", options).search(); // Hash-distributed A*, no visualization
+        }
 
-        return "NOSOLUTION";
+        if (usesNodePool()) {
+            return pooledSearch("AS3", visualize);
+        }
+
+        priorityQueue.clear();
+        addToFrontier(root, "AS3");
+
+        while (!priorityQueue.isEmpty()) {
+            if (outOfBudget()) {
+                return exhausted();
+            }
+            Node currentNode = pollPriorityQueue("AS3");
+
+            if (visualize) {
+                visualizeState(currentNode);
+            }
+
+            if (currentNode.isGoal()) {
+                return result(currentNode);
+            }
+
+            expandNode(currentNode, "AS3");
+        }
+        return noSolution();
     }
 
     public static void main(String[] args) {
@@ -427,32 +1074,13 @@ public class WaterSortSearch extends GenericSearch {
         boolean visualize = false;
 
         // Call the solve method on the instance
-        String result = WaterSortSearch.solve(initialState, strategy, visualize);
+        SearchResult result = WaterSortSearch.solveResult(initialState, strategy, visualize, new SearchOptions());
 
-        // Print the result
+        // Print the result and what the search did
         System.out.println("Result: " + result);
-    }
-
-    public static long getUsedMemory() {
-        Runtime runtime = Runtime.getRuntime();
-        return runtime.totalMemory() - runtime.freeMemory();
-    }
-
-    public static void measureMemoryUsage(String algorithmName, Runnable algorithm) {
-        // Record memory usage before
-        long memoryBefore = getUsedMemory();
-        System.out.println(algorithmName + " - Memory before execution: " + memoryBefore + " bytes");
-
-        // Run the algorithm
-        algorithm.run();
-
-        // Record memory usage after
-        long memoryAfter = getUsedMemory();
-        System.out.println(algorithmName + " - Memory after execution: " + memoryAfter + " bytes");
-
-        // Calculate and print memory consumed
-        long memoryUsed = memoryAfter - memoryBefore;
-        System.out.println(algorithmName + " - Memory used: " + memoryUsed + " bytes\n");
+        System.out.println("Generated: " + result.getGenerated() + ", duplicates: " + result.getDuplicates()
+                + ", peak frontier: " + result.getPeakFrontier() + ", peak closed: " + result.getPeakClosed()
+                + ", time: " + result.getWallNanos() / 1000 + " us, allocated: " + result.getAllocatedBytes() + " bytes");
     }
 
 }
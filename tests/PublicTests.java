@@ -1,7 +1,28 @@
 package tests;
 
 
+import code.Bottle;
+import code.CancellationToken;
+import code.MovePruning;
+import code.OffHeapStateSet;
+import code.PackedState;
+import code.PuzzleGenerator;
+import code.SearchBudget;
+import code.SearchListener;
+import code.SearchOptions;
+import code.SearchResult;
+import code.SolutionCache;
 import code.WaterSortSearch;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
@@ -375,7 +396,390 @@ public class PublicTests {
         assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(grid4, solution));
     }
 
+    @Test(timeout = 60000)
+    public void testi1() throws Exception {
+        SearchOptions options = new SearchOptions().setSortBottles(true);
+        String solution = WaterSortSearch.solve(grid1, "BF", false, options);
+        solution = solution.replace(" ", "")+";";
+        Checker pc = new Checker(grid1);
+        assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(grid1, solution));
+    }
+
+    @Test(timeout = 60000)
+    public void testi4() throws Exception {
+        SearchOptions options = new SearchOptions().setSortBottles(true).setRenameColors(true);
+        String solution = WaterSortSearch.solve(grid4, "AS2", false, options);
+        solution = solution.replace(" ", "")+";";
+        Checker pc = new Checker(grid4);
+        assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(grid4, solution));
+    }
+
+    @Test(timeout = 60000)
+    public void testj0() throws Exception {
+        String grid = new PuzzleGenerator(42, 7, 4, 5, 2, 50).next();
+        assertEquals(grid, new PuzzleGenerator(42, 7, 4, 5, 2, 50).next());
+        String solution = WaterSortSearch.solve(grid, "GR1", false);
+        solution = solution.replace(" ", "")+";";
+        Checker pc = new Checker(grid);
+        assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(grid, solution));
+    }
+
+    @Test(timeout = 60000)
+    public void testk1() throws Exception {
+        SearchOptions options = new SearchOptions().setParallelism(4);
+        String solution = WaterSortSearch.solve(grid1, "AS1", false, options);
+        solution = solution.replace(" ", "")+";";
+        Checker pc = new Checker(grid1);
+        assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(grid1, solution));
+    }
+
+    @Test(timeout = 60000)
+    public void testl1() throws Exception {
+        SearchOptions options = new SearchOptions().setParallelism(4);
+        String solution = WaterSortSearch.solve(grid1, "BF", false, options);
+        assertEquals(WaterSortSearch.solve(grid1, "BF", false), solution);
+        solution = solution.replace(" ", "")+";";
+        Checker pc = new Checker(grid1);
+        assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(grid1, solution));
+    }
+
+    @Test(timeout = 60000)
+    public void testm0() throws Exception {
+        List<String> grids = Arrays.asList(grid0, grid1, grid2, grid3, grid4, grid1, grid4);
+        List<String> solutions = WaterSortSearch.solveAll(grids, "AS2", 3);
+        assertEquals(grids.size(), solutions.size());
+        for (int i = 0; i < grids.size(); i++) {
+            assertEquals(WaterSortSearch.solve(grids.get(i), "AS2", false), solutions.get(i));
+            Checker pc = new Checker(grids.get(i));
+            assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(grids.get(i), solutions.get(i).replace(" ", "")+";"));
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testn1() throws Exception {
+        String solution = WaterSortSearch.solve(grid1, "IDA2", false);
+        assertEquals("10", solution.split(";")[1]);
+        solution = solution.replace(" ", "")+";";
+        Checker pc = new Checker(grid1);
+        assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(grid1, solution));
+    }
+    @Test(timeout = 60000)
+    public void testn3() throws Exception {
+        SearchOptions options = new SearchOptions().setTranspositionTable(1 << 12);
+        String solution = WaterSortSearch.solve(grid3, "IDA1", false, options);
+        assertEquals("20", solution.split(";")[1]);
+        solution = solution.replace(" ", "")+";";
+        Checker pc = new Checker(grid3);
+        assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(grid3, solution));
+    }
+
+    @Test(timeout = 60000)
+    public void testo1() throws Exception {
+        Path directory = Files.createTempDirectory("external-bfs");
+        try {
+            SearchOptions options = new SearchOptions().setExternalMemory(directory, 4);
+            String solution = WaterSortSearch.solve(grid1, "BF", false, options);
+            assertEquals(WaterSortSearch.solve(grid1, "BF", false), solution);
+            solution = solution.replace(" ", "")+";";
+            Checker pc = new Checker(grid1);
+            assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(grid1, solution));
+        } finally {
+            Files.delete(directory);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testp1() throws Exception {
+        Path directory = Files.createTempDirectory("pattern-database");
+        try {
+            SearchOptions options = new SearchOptions().setPatternDirectory(directory);
+            String solution = WaterSortSearch.solve(grid1, "AS3", false, options);
+            assertEquals("10", solution.split(";")[1]);
+            solution = solution.replace(" ", "")+";";
+            Checker pc = new Checker(grid1);
+            assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(grid1, solution));
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+    @Test(timeout = 60000)
+    public void testp4() throws Exception {
+        Path directory = Files.createTempDirectory("pattern-database");
+        try {
+            SearchOptions options = new SearchOptions().setPatternDirectory(directory);
+            String solution = WaterSortSearch.solve(grid4, "GR3", false, options);
+            solution = solution.replace(" ", "")+";";
+            Checker pc = new Checker(grid4);
+            assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(grid4, solution));
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testq3() throws Exception {
+        MovePruning pruning = new MovePruning();
+        SearchOptions options = new SearchOptions().setTranspositionTable(1 << 12).setMovePruning(pruning);
+        String solution = WaterSortSearch.solve(grid3, "IDA1", false, options);
+        assertEquals("20", solution.split(";")[1]);
+        assertTrue(pruning.prunedTotal() > 0);
+        solution = solution.replace(" ", "")+";";
+        Checker pc = new Checker(grid3);
+        assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(grid3, solution));
+    }
+
+    @Test(timeout = 60000)
+    public void testr1() throws Exception {
+        Path directory = Files.createTempDirectory("solutions");
+        Path store = directory.resolve("cache.bin");
+        try {
+            String permuted = "5;4;e,e,e,e;y,r,b,y;b,y,r,r;e,e,e,e;b,y,r,b;";
+            try (SolutionCache cache = new SolutionCache(16, store)) {
+                SearchOptions options = new SearchOptions().setSolutionCache(cache);
+                String first = WaterSortSearch.solve(grid1, "AS1", false, options);
+                String second = WaterSortSearch.solve(permuted, "AS1", false, options);
+                assertEquals(1, cache.hits());
+                assertEquals(first.split(";")[1], second.split(";")[1]);
+                Checker pc = new Checker(permuted);
+                assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(permuted, second.replace(" ", "") + ";"));
+            }
+            try (SolutionCache cache = new SolutionCache(16, store)) {
+                assertEquals(1, cache.size());
+                WaterSortSearch.solve(grid1, "AS1", false, new SearchOptions().setSolutionCache(cache));
+                assertEquals(1, cache.hits());
+                // Other settings get their own entry, and a failed narrow beam proves nothing
+                WaterSortSearch.solve(grid1, "AS1", false, new SearchOptions().setSolutionCache(cache).setLazyHeuristic(true));
+                assertEquals(1, cache.hits());
+                SearchOptions narrow = new SearchOptions().setSolutionCache(cache).setBeam(1, 1 << 16);
+                assertEquals("NOSOLUTION", WaterSortSearch.solve(grid3, "BS1", false, narrow));
+                assertEquals(2, cache.size());
+                String wide = WaterSortSearch.solve(grid3, "BS1", false, new SearchOptions().setSolutionCache(cache));
+                assertTrue(new Checker(grid3).applyPlan(grid3, wide.replace(" ", "") + ";"));
+            }
+            // Evicted records pile up in the store until it is compacted on opening
+            Path small = directory.resolve("small.bin");
+            try (SolutionCache cache = new SolutionCache(1, small)) {
+                for (String grid : new String[]{grid0, grid1, grid4}) {
+                    WaterSortSearch.solve(grid, "AS1", false, new SearchOptions().setSolutionCache(cache));
+                }
+            }
+            long before = Files.size(small);
+            try (SolutionCache cache = new SolutionCache(1, small)) {
+                assertTrue(Files.size(small) < before);
+                WaterSortSearch.solve(grid4, "AS1", false, new SearchOptions().setSolutionCache(cache));
+                assertEquals(1, cache.hits());
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void tests1() throws Exception {
+        List<SearchResult> reported = new ArrayList<>();
+        SearchOptions options = new SearchOptions().setListener((puzzle, strategy, result) -> reported.add(result));
+        SearchResult result = WaterSortSearch.solveResult(grid1, "AS2", false, options);
+        assertEquals(1, reported.size());
+        assertEquals(WaterSortSearch.solve(grid1, "AS2", false), result.toString());
+        assertEquals(result.getMoves().length, result.getPlan().split(",").length);
+        assertTrue(result.getGenerated() >= result.getDuplicates() + result.getExpanded() - 1);
+        assertTrue(result.getPeakFrontier() > 0 && result.getPeakClosed() > 0 && result.getWallNanos() > 0);
+        Checker pc = new Checker(grid1);
+        assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(grid1, result.getPlan() + ";" + result.getCost() + ";" + result.getExpanded() + ";"));
+    }
+
+    @Test(timeout = 60000)
+    public void testt1() throws Exception {
+        List<SearchResult> found = new ArrayList<>();
+        SearchOptions options = new SearchOptions().setAnytime(4, 1, 0).setListener(new SearchListener() {
+            @Override
+            public void searchFinished(String initialState, String strategy, SearchResult result) {
+            }
+
+            @Override
+            public void solutionFound(String strategy, SearchResult result) {
+                found.add(result);
+            }
+        });
+        SearchResult result = WaterSortSearch.solveResult(grid1, "ARA1", false, options);
+        assertEquals(10, result.getCost());
+        assertEquals(1.0, result.getSuboptimalityBound(), 0);
+        assertTrue(found.get(0).getCost() <= found.get(0).getSuboptimalityBound() * 10);
+        // H2 is not admissible, so ARA2 claims no bound
+        assertTrue(Double.isNaN(WaterSortSearch.solveResult(grid1, "ARA2", false, new SearchOptions()).getSuboptimalityBound()));
+        Checker pc = new Checker(grid1);
+        assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(grid1, result + ";"));
+    }
+
+    @Test(timeout = 60000)
+    public void testu3() throws Exception {
+        SearchResult result = WaterSortSearch.solveResult(grid3, "BF", false, new SearchOptions().setMaxExpansions(20));
+        assertEquals(SearchResult.Outcome.BUDGET_EXHAUSTED, result.getOutcome());
+        assertEquals(SearchBudget.Limit.EXPANSIONS, result.getExhaustedBy());
+        assertEquals("BUDGETEXHAUSTED", result.toString());
+        assertEquals(20, result.getExpanded());
+        assertTrue(result.getPartialPlan() != null);
+        // Parallel BF checks the budget inside a layer as well, so the cap is met exactly
+        result = WaterSortSearch.solveResult(grid3, "BF", false, new SearchOptions().setParallelism(4).setMaxExpansions(20));
+        assertEquals(SearchBudget.Limit.EXPANSIONS, result.getExhaustedBy());
+        assertEquals(20, result.getExpanded());
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        result = WaterSortSearch.solveResult(grid3, "AS1", false, new SearchOptions().setCancellation(token));
+        assertEquals(SearchBudget.Limit.CANCELLED, result.getExhaustedBy());
+        // An interrupt cancels the parallel searches too, and stays set for the caller
+        for (String strategy : new String[]{"BF", "AS1"}) {
+            Thread.currentThread().interrupt();
+            result = WaterSortSearch.solveResult(grid3, strategy, false, new SearchOptions().setParallelism(4));
+            assertTrue(Thread.interrupted());
+            assertEquals(SearchBudget.Limit.CANCELLED, result.getExhaustedBy());
+        }
+        assertEquals(SearchResult.Outcome.SOLVED,
+                WaterSortSearch.solveResult(grid3, "AS1", false, new SearchOptions().setMaxExpansions(1000000)).getOutcome());
+    }
+
+    @Test(timeout = 60000)
+    public void testv0() throws Exception {
+        String large = new PuzzleGenerator(7, 12, 4, 10, 2, 400).next();
+        for (String strategy : new String[]{"BS1", "BS2"}) {
+            String solution = WaterSortSearch.solve(large, strategy, false, new SearchOptions().setBeam(256, 1 << 12));
+            Checker pc = new Checker(large);
+            assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(large, solution + ";"));
+        }
+        // A beam of one node runs into a dead end
+        assertEquals("NOSOLUTION", WaterSortSearch.solve(large, "BS2", false, new SearchOptions().setBeam(1, 1 << 16)));
+    }
+
+    @Test(timeout = 60000)
+    public void testw3() throws Exception {
+        for (String strategy : new String[]{"UC", "GR2", "AS1"}) {
+            SearchResult pooled = WaterSortSearch.solveResult(grid3, strategy, false, new SearchOptions());
+            SearchResult objects = WaterSortSearch.solveResult(grid3, strategy, false, new SearchOptions().setNodePool(false));
+            assertEquals(objects.toString(), pooled.toString());
+            assertEquals(objects.getGenerated(), pooled.getGenerated());
+            assertEquals(objects.getPeakFrontier(), pooled.getPeakFrontier());
+        }
+    }
 
+    @Test(timeout = 60000)
+    public void testx0() throws Exception {
+        String[] grids = {grid0, grid1, grid2, grid3, grid4};
+        for (String grid : grids) {
+            SearchResult result = WaterSortSearch.solveResult(grid, "DF", false, new SearchOptions().setLazySuccessors(true));
+            Checker pc = new Checker(grid);
+            assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(grid, result + ";"));
+            // Only states the search entered, up to the goal, are kept for duplicate detection
+            assertEquals(result.getExpanded() + 1, result.getPeakClosed());
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testy3() throws Exception {
+        Path directory = Files.createTempDirectory("pattern-database");
+        try {
+            SearchResult eager = WaterSortSearch.solveResult(grid3, "AS3", false, new SearchOptions().setPatternDirectory(directory));
+            for (boolean nodePool : new boolean[]{true, false}) {
+                SearchOptions options = new SearchOptions().setLazyHeuristic(true).setNodePool(nodePool)
+                        .setPatternDirectory(directory);
+                SearchResult lazy = WaterSortSearch.solveResult(grid3, "AS3", false, options);
+                // H3 is consistent, so deferring it keeps A* optimal
+                assertEquals(eager.getCost(), lazy.getCost());
+                String greedy = WaterSortSearch.solve(grid3, "GR2", false, options);
+                Checker pc = new Checker(grid3);
+                assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(grid3, greedy + ";"));
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testz3() throws Exception {
+        for (String strategy : new String[]{"BF", "UC", "AS1", "ARA1"}) {
+            String onHeap = WaterSortSearch.solve(grid3, strategy, false);
+            String offHeap = WaterSortSearch.solve(grid3, strategy, false, new SearchOptions().setOffHeapStates(100000));
+            assertEquals(onHeap.split(";")[1], offHeap.split(";")[1]);
+            Checker pc = new Checker(grid3);
+            assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(grid3, offHeap + ";"));
+        }
+        // A table too small for the search ends it like the closed-state budget
+        SearchResult full = WaterSortSearch.solveResult(grid3, "UC", false, new SearchOptions().setOffHeapStates(40));
+        assertEquals(SearchBudget.Limit.CLOSED_STATES, full.getExhaustedBy());
+        assertTrue(full.getPartialPlan() != null);
+        try (OffHeapStateSet table = new OffHeapStateSet(2, 3)) {
+            assertTrue(table.addOrLower(new long[]{1, 2}, 5));
+            assertFalse(table.add(new long[]{1, 2}));
+            assertEquals(5, table.valueOf(new long[]{1, 2}));
+            table.add(new long[]{3, 4});
+            table.add(new long[]{5, 6});
+            table.add(new long[]{7, 8});
+            fail("A full table must not accept more states");
+        } catch (IllegalStateException expected) {
+            // Sized for three states
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testza3() throws Exception {
+        for (String strategy : new String[]{"DF", "GR2"}) {
+            SearchResult exact = WaterSortSearch.solveResult(grid3, strategy, false, new SearchOptions());
+            assertTrue(Double.isNaN(exact.getOmissionProbability()));
+            SearchResult result = WaterSortSearch.solveResult(grid3, strategy, false, new SearchOptions().setBitstate(1 << 16, 3));
+            Checker pc = new Checker(grid3);
+            assertTrue("The output actions do not lead to a goal state.", pc.applyPlan(grid3, result + ";"));
+            assertTrue(result.getOmissionProbability() > 0 && result.getOmissionProbability() < 1e-3);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testzb0() throws Exception {
+        // Random pour and unpour walks, checked against a state recounted from scratch after every step.
+        // The generated board spreads 20 layers over 7 bottles, so some start partly filled
+        List<String> grids = Arrays.asList(grid0, grid1, grid2, grid3, grid4, new PuzzleGenerator(5, 9, 4, 5, 2, 60).next());
+        Random random = new Random(14);
+        for (String grid : grids) {
+            PackedState state = packedState(grid);
+            int size = state.size();
+            List<int[]> pours = new ArrayList<>();
+            for (int step = 0; step < 500; step++) {
+                if (!pours.isEmpty() && random.nextInt(3) == 0) {
+                    int[] last = pours.remove(pours.size() - 1);
+                    state.unpour(last[0], last[1], last[2]);
+                } else {
+                    int source = random.nextInt(size);
+                    int target = random.nextInt(size);
+                    int amount = state.pour(source, target);
+                    if (amount > 0) {
+                        pours.add(new int[]{source, target, amount});
+                    }
+                }
+                PackedState fresh = packedState(state.toGridString());
+                assertEquals(fresh.h1(), state.h1());
+                assertEquals(fresh.h2(), state.h2());
+                assertEquals(fresh.isGoal(), state.isGoal());
+            }
+        }
+    }
+
+    // Parse a grid into a packed state the way WaterSortSearch.initializeNode does
+    private static PackedState packedState(String grid) {
+        String[] parts = grid.split(";");
+        int capacity = Integer.parseInt(parts[1]);
+        ArrayList<Bottle> bottles = new ArrayList<>();
+        for (int i = 2; i < parts.length; i++) {
+            bottles.add(new Bottle(parts[i].replace(",", ""), capacity));
+        }
+        return PackedState.fromBottles(bottles, capacity);
+    }
+
+    // Delete a temporary directory and the files a search wrote into it
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
 }
 
 class Checker{